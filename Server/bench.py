@@ -0,0 +1,512 @@
+#!/usr/bin/env python3
+"""
+Scenario benchmarks: a scripted leader and followers talk to a real sync.py through netem.py
+proxies, for every (scenario, relay mode) pair, and report:
+
+  - MOVE end-to-end latency (leader send -> follower receive), p50/p95/p99/max
+  - reliable-event latency (HBAR_, sequenced by the relay), p50/p99
+  - desync: share of follower time spent showing a leader state older than --desync-ms,
+    and the longest such episode
+
+Everything runs on this machine; the relay is started as a subprocess per run.
+
+  python3 bench.py                              # all scenarios x all modes, 8s each
+  python3 bench.py -s wan,lossy -m loop+zlib -d 20 -f 8
+
+--failover runs a primary and a --mirror-of standby instead, kills (or with --hang, freezes) the
+primary mid-run and reports how long followers went without a MOVE_ and whether roles survived.
+
+  python3 bench.py --failover -m loop
+  python3 bench.py --failover --hang
+"""
+import argparse
+import os
+import signal
+import socket
+import subprocess
+import sys
+import threading
+import time
+import zlib
+
+from netem import Impairment, Proxy, log
+from sync import ZDICT
+
+SCENARIOS = {
+    "lan":    Impairment(),
+    "wan":    Impairment(delay_ms=40, jitter_ms=8),
+    "jitter": Impairment(delay_ms=30, jitter_ms=20, dist="pareto"),
+    "lossy":  Impairment(delay_ms=40, jitter_ms=8, loss=0.02),
+    "narrow": Impairment(delay_ms=20, rate=6 * 1024),
+}
+
+# relay --mode, clients request compression
+MODES = {
+    "threads":      ("threads", False),
+    "loop":         ("loop", False),
+    "threads+zlib": ("threads", True),
+    "loop+zlib":    ("loop", True),
+}
+
+MOVE_HZ = 30
+HBAR_EVERY = 0.5  # seconds
+
+
+def free_port() -> int:
+    s = socket.socket()
+    s.bind(("127.0.0.1", 0))
+    port = s.getsockname()[1]
+    s.close()
+    return port
+
+
+class FakeClient:
+    """Speaks the relay's text protocol (HELLO v2, optional zlib) and timestamps MOVE/HBAR arrivals."""
+
+    def __init__(self, port: int, sid: str, compress: bool, connect: bool = True):
+        self.sid = sid
+        self.compress = compress
+        self.sock = None
+        self.wlock = threading.Lock()
+        self.zout = None
+        self.zin = None
+        self.role = None
+        self.moves: list[tuple[float, int]] = []   # (arrival, k)
+        self.hbars: dict[int, float] = {}          # n -> arrival
+        self.closed = False
+        if connect:
+            self.open(port)
+            threading.Thread(target=self.reader, daemon=True).start()
+
+    def open(self, port: int, timeout: float | None = None):
+        sock = socket.create_connection(("127.0.0.1", port), timeout=timeout)
+        sock.setsockopt(socket.IPPROTO_TCP, socket.TCP_NODELAY, 1)
+        with self.wlock:
+            self.sock = sock
+            self.zout = None
+        self.zin = None
+        self.closed = False
+        caps = "invb,zlib" if self.compress else "invb"
+        self.send(f"HELLO_{self.sid}_0_2_{caps}")
+
+    def send(self, line: str):
+        data = (line + "\n").encode()
+        with self.wlock:
+            if self.zout is not None:
+                data = self.zout.compress(data) + self.zout.flush(zlib.Z_SYNC_FLUSH)
+            try:
+                self.sock.sendall(data)
+            except OSError:
+                self.closed = True
+
+    def reader(self):
+        buf = b""
+        try:
+            while True:
+                try:
+                    data = self.sock.recv(65536)
+                except socket.timeout:
+                    if not self.tick():
+                        break
+                    continue
+                if not data:
+                    break
+                now = time.monotonic()
+                if self.zin is not None:
+                    data = self.zin.decompress(data)
+                buf += data
+                while b"\n" in buf:
+                    raw, buf = buf.split(b"\n", 1)
+                    line = raw.decode()
+                    if line == "ZLIB_OK":
+                        # Relay deflates after ZLIB_OK; ZLIB_ON is our last plain line
+                        self.zin = zlib.decompressobj(zdict=ZDICT)
+                        buf = self.zin.decompress(buf)
+                        with self.wlock:
+                            self.sock.sendall(b"ZLIB_ON\n")
+                            self.zout = zlib.compressobj(1, zlib.DEFLATED, 15, 8, zlib.Z_DEFAULT_STRATEGY, ZDICT)
+                        continue
+                    self.on_line(now, line)
+        except (OSError, zlib.error):
+            pass
+        self.closed = True
+
+    def tick(self) -> bool:
+        """Socket timeout while reading (only with a timeout set): False drops the connection."""
+        return True
+
+    def on_line(self, now: float, line: str):
+        if line.startswith("SEQ_"):
+            line = line.split("_", 2)[2]
+        if line.startswith("MOVE_"):
+            self.moves.append((now, int(float(line.split("_")[1]))))
+        elif line.startswith("HBAR_"):
+            self.hbars.setdefault(int(line[5:]), now)
+        elif line.startswith("WELCOME_"):
+            if "zlib" in line.split("_")[2].split(","):
+                self.send("ZLIB_REQ")
+        elif line.startswith("ROLE_"):
+            self.role = line[5:]
+
+    def close(self):
+        try:
+            self.sock.close()
+        except OSError:
+            pass
+
+
+class FailoverClient(FakeClient):
+    """
+    FakeClient over a relay list with the core's ClientIO policy: try relays in order, skip one
+    that refuses or says nothing within HANDSHAKE_S, back off only after a whole round, retry a
+    relay that dropped us once, and PING a quiet relay, moving on after LIVENESS_S of silence
+    (and skipping it for SILENT_SKIP_S: a frozen relay still takes connects).
+    """
+
+    CONNECT_S = 1.5
+    HANDSHAKE_S = 1.0
+    PING_S = 0.25
+    LIVENESS_S = 0.8
+    SILENT_SKIP_S = 2.0
+    TICK_S = 0.05  # ClientIO wakes at the liveness deadline; this is close enough
+
+    def __init__(self, ports: list[int], sid: str, compress: bool):
+        super().__init__(ports[0], sid, compress, connect=False)
+        self.ports = ports
+        self.endpoint = 0
+        self.skip_until = [0.0] * len(ports)
+        self.heard = False
+        self.opened_at = self.last_rx = self.last_ping = 0.0
+        self.connects: list[tuple[float, int]] = []  # (first line heard, port)
+        self.stopped = False
+        threading.Thread(target=self.run, daemon=True).start()
+
+    def run(self):
+        attempt = 0
+        while not self.stopped:
+            self.heard = False
+            if time.monotonic() >= self.skip_until[self.endpoint]:
+                try:
+                    self.open(self.ports[self.endpoint], timeout=self.CONNECT_S)
+                    self.sock.settimeout(self.TICK_S)
+                    self.opened_at = self.last_rx = time.monotonic()
+                    self.reader()
+                except OSError:
+                    pass
+            self.close()
+            if self.heard:
+                attempt = 0  # a working relay dropped us: retry it first
+                continue
+            self.endpoint = (self.endpoint + 1) % len(self.ports)
+            if self.endpoint == 0:
+                time.sleep(0.0 if attempt == 0 else min(1.0, 0.05 * 2 ** (attempt - 1)))
+                attempt += 1
+
+    def on_line(self, now: float, line: str):
+        if not self.heard:
+            self.heard = True
+            self.connects.append((now, self.ports[self.endpoint]))
+        self.last_rx = now
+        super().on_line(now, line)
+
+    def tick(self) -> bool:
+        now = time.monotonic()
+        if not self.heard:
+            return now - self.opened_at < self.HANDSHAKE_S
+        quiet = now - self.last_rx
+        if quiet >= self.LIVENESS_S:
+            if len(self.ports) > 1:
+                self.skip_until[self.endpoint] = now + self.SILENT_SKIP_S
+            self.heard = False  # hung relay: go to the next one
+            return False
+        if quiet >= self.PING_S and now - self.last_ping >= self.PING_S:
+            self.last_ping = now
+            self.send("PING")
+        return True
+
+    def stop(self):
+        self.stopped = True
+        self.close()
+
+
+def wait_for(cond, timeout: float) -> bool:
+    end = time.monotonic() + timeout
+    while time.monotonic() < end:
+        if cond():
+            return True
+        time.sleep(0.01)
+    return False
+
+
+def pct(xs: list[float], p: float) -> float:
+    if not xs:
+        return float("nan")
+    xs = sorted(xs)
+    return xs[min(len(xs) - 1, int(p / 100.0 * len(xs)))]
+
+
+def desync(moves: list[tuple[float, int]], sent: dict[int, float], t0: float, t1: float,
+           threshold: float) -> tuple[float, float]:
+    """
+    Time in [t0, t1) during which the follower's current state was sent more than threshold
+    ago (staleness grows linearly between arrivals). Returns (desynced seconds, longest episode).
+    """
+    total = longest = run = 0.0
+    cur = None   # send time of the state the follower is showing
+    prev = t0
+    pts = [(r, sent[k]) for (r, k) in moves if k in sent] + [(t1, None)]
+    for r, s in pts:
+        r = min(max(r, t0), t1)
+        if r > prev:
+            # [prev, r): stale from cur + threshold on (from the start before the first MOVE)
+            stale_from = prev if cur is None else max(prev, cur + threshold)
+            if stale_from < r:
+                if stale_from > prev:
+                    run = 0.0  # was fresh at prev: a new episode starts
+                run += r - stale_from
+                total += r - stale_from
+                longest = max(longest, run)
+            else:
+                run = 0.0
+            prev = r
+        if s is not None and (cur is None or s > cur):
+            cur = s
+    return total, longest
+
+
+def run_one(scenario: str, mode: str, followers: int, duration: float, warmup: float, threshold: float) -> dict:
+    imp = SCENARIOS[scenario]
+    relay_mode, compress = MODES[mode]
+    relay_port = free_port()
+    here = os.path.dirname(os.path.abspath(__file__))
+    relay = subprocess.Popen([sys.executable, os.path.join(here, "sync.py"), "--port", str(relay_port),
+                              "--mode", relay_mode],
+                             stdin=subprocess.PIPE, stdout=subprocess.DEVNULL, stderr=subprocess.DEVNULL)
+    proxies = []
+    clients = []
+    try:
+        wait_for(lambda: _connectable(relay_port), 5.0)
+
+        def via_proxy(seed: int) -> int:
+            p = Proxy(free_port(), relay_port, imp, seed=seed)
+            p.start()
+            proxies.append(p)
+            return p.listen_port
+
+        leader = FakeClient(via_proxy(1), "leader", compress)
+        clients.append(leader)
+        if not wait_for(lambda: leader.role == "LEADER", 5.0):
+            raise RuntimeError("leader was not elected")
+        leader.send("FOCUS_1")
+        for i in range(followers):
+            clients.append(FakeClient(via_proxy(2 + i), f"follower{i}", compress))
+        wait_for(lambda: all(c.role == "FOLLOWER" for c in clients[1:]), 5.0)
+
+        sent: dict[int, float] = {}
+        hbar_sent: dict[int, float] = {}
+        start = time.monotonic()
+        end = start + warmup + duration
+        k = 0
+        n = 0
+        next_move = start
+        next_hbar = start
+        while True:
+            now = time.monotonic()
+            if now >= end:
+                break
+            if now >= next_move:
+                k += 1
+                sent[k] = time.monotonic()
+                leader.send(f"MOVE_{k}.000000_0.000000_1.000000_0.000000_0_0_1_0_0_0")
+                next_move += 1.0 / MOVE_HZ
+            if now >= next_hbar:
+                n += 1
+                hbar_sent[n] = time.monotonic()
+                leader.send(f"HBAR_{n}")
+                next_hbar += HBAR_EVERY
+            time.sleep(max(0.0, min(next_move, next_hbar) - time.monotonic()))
+        time.sleep(1.0 + imp.delay_ms / 500.0)  # let in-flight data land
+
+        t0 = start + warmup
+        t1 = end
+        lat, hlat = [], []
+        received = expected = 0
+        desync_s = longest = 0.0
+        for f in clients[1:]:
+            for (r, kk) in f.moves:
+                if sent.get(kk, 0.0) >= t0:
+                    lat.append(r - sent[kk])
+            for nn, r in f.hbars.items():
+                if hbar_sent.get(nn, 0.0) >= t0:
+                    hlat.append(r - hbar_sent[nn])
+            got = {kk for (_, kk) in f.moves}
+            window = [kk for kk, ts in sent.items() if ts >= t0]
+            expected += len(window)
+            received += sum(1 for kk in window if kk in got)
+            d, lg = desync(f.moves, sent, t0, t1, threshold)
+            desync_s += d
+            longest = max(longest, lg)
+
+        ms = lambda x: x * 1000.0
+        return {
+            "scenario": scenario, "mode": mode,
+            "p50": ms(pct(lat, 50)), "p95": ms(pct(lat, 95)), "p99": ms(pct(lat, 99)), "max": ms(max(lat, default=float("nan"))),
+            "h50": ms(pct(hlat, 50)), "h99": ms(pct(hlat, 99)),
+            "delivered": 100.0 * received / expected if expected else float("nan"),
+            "desync": 100.0 * desync_s / (followers * (t1 - t0)),
+            "longest": ms(longest),
+            "wire": sum(p.bytes_down for p in proxies[1:]) / followers / duration,
+        }
+    finally:
+        for c in clients:
+            c.close()
+        for p in proxies:
+            p.close()
+        try:
+            relay.stdin.close()
+            relay.wait(timeout=2)
+        except Exception:
+            relay.kill()
+
+
+def run_failover(mode: str, followers: int, duration: float, hang: bool) -> dict:
+    """
+    Primary + standby relay, leader streaming MOVE_ at MOVE_HZ through the primary; halfway
+    through, the primary is killed (hang: frozen with SIGSTOP). Per follower, the gap is the time
+    from the kill to its first MOVE_ sent after it.
+    """
+    relay_mode, compress = MODES[mode]
+    p1, p2 = free_port(), free_port()
+    here = os.path.dirname(os.path.abspath(__file__))
+
+    def relay(*extra: str) -> subprocess.Popen:
+        return subprocess.Popen([sys.executable, os.path.join(here, "sync.py"), "--mode", relay_mode, *extra],
+                                stdin=subprocess.PIPE, stdout=subprocess.DEVNULL, stderr=subprocess.DEVNULL)
+
+    primary = relay("--port", str(p1))
+    standby = None
+    clients: list[FailoverClient] = []
+    try:
+        wait_for(lambda: _connectable(p1), 5.0)
+        standby = relay("--port", str(p2), "--mirror-of", f"127.0.0.1:{p1}")
+        wait_for(lambda: _connectable(p2), 5.0)
+        time.sleep(0.5)  # mirror link up: the standby refuses clients from here on
+
+        leader = FailoverClient([p1, p2], "leader", compress)
+        clients.append(leader)
+        if not wait_for(lambda: leader.role == "LEADER", 5.0):
+            raise RuntimeError("leader was not elected")
+        leader.send("FOCUS_1")
+        for i in range(followers):
+            clients.append(FailoverClient([p1, p2], f"follower{i}", compress))
+        if not wait_for(lambda: all(c.role == "FOLLOWER" for c in clients[1:]), 5.0):
+            raise RuntimeError("followers did not join")
+        if any(c.ports[c.endpoint] != p1 for c in clients):
+            raise RuntimeError("a client started on the standby")
+
+        sent: dict[int, float] = {}
+        start = time.monotonic()
+        kill_at = start + duration / 2
+        end = start + duration
+        killed = 0.0
+        k = 0
+        next_move = start
+        while (now := time.monotonic()) < end:
+            if not killed and now >= kill_at:
+                killed = time.monotonic()
+                if hang:
+                    primary.send_signal(signal.SIGSTOP)
+                else:
+                    primary.kill()
+            if now >= next_move:
+                k += 1
+                sent[k] = time.monotonic()
+                leader.send(f"MOVE_{k}.000000_0.000000_1.000000_0.000000_0_0_1_0_0_0")
+                next_move += 1.0 / MOVE_HZ
+            time.sleep(max(0.0, next_move - time.monotonic()))
+        time.sleep(0.5)
+
+        gaps = []
+        for f in clients[1:]:
+            after = [r for (r, kk) in f.moves if sent.get(kk, 0.0) >= killed]
+            gaps.append(min(after) - killed if after else float("inf"))
+        ms = lambda x: x * 1000.0
+        return {
+            "mode": mode,
+            "leader": ms(next((t for (t, p) in leader.connects if p == p2), float("inf")) - killed),
+            "g50": ms(pct(gaps, 50)), "gmax": ms(max(gaps)),
+            "on_standby": sum(1 for c in clients if c.ports[c.endpoint] == p2 and not c.closed),
+            "roles": leader.role == "LEADER" and all(c.role == "FOLLOWER" for c in clients[1:]),
+        }
+    finally:
+        for c in clients:
+            c.stop()
+        for r in (primary, standby):
+            if r is None:
+                continue
+            if hang:
+                r.send_signal(signal.SIGCONT)
+            r.kill()
+            r.wait(timeout=2)
+
+
+def _connectable(port: int) -> bool:
+    try:
+        socket.create_connection(("127.0.0.1", port), timeout=0.2).close()
+        return True
+    except OSError:
+        return False
+
+
+def main():
+    ap = argparse.ArgumentParser(description="InputSync scenario benchmarks (local relay + impairment proxy)")
+    ap.add_argument("-s", "--scenarios", default=",".join(SCENARIOS), help="comma list of " + ",".join(SCENARIOS))
+    ap.add_argument("-m", "--modes", default=",".join(MODES), help="comma list of " + ",".join(MODES))
+    ap.add_argument("-f", "--followers", type=int, default=3)
+    ap.add_argument("-d", "--duration", type=float, default=8.0, help="measured seconds per run")
+    ap.add_argument("--warmup", type=float, default=1.0)
+    ap.add_argument("--desync-ms", type=float, default=100.0, help="staleness that counts as desynced")
+    ap.add_argument("--failover", action="store_true", help="primary + standby relay, primary dies mid-run")
+    ap.add_argument("--hang", action="store_true", help="with --failover: freeze the primary instead of killing it")
+    args = ap.parse_args()
+
+    if args.failover:
+        log(f"# failover: primary {'frozen' if args.hang else 'killed'} after {args.duration / 2:.1f}s,"
+            f" {args.followers} followers")
+        log(f"{'mode':<13} {'leader ms':>9} {'gap p50':>8} {'max':>7} {'standby':>7} {'roles':>6}")
+        for mode in args.modes.split(","):
+            if mode not in MODES:
+                log(f"unknown mode {mode}")
+                continue
+            try:
+                r = run_failover(mode, args.followers, args.duration, args.hang)
+            except (OSError, RuntimeError) as e:
+                log(f"{mode:<13} failed: {e}")
+                continue
+            log(f"{mode:<13} {r['leader']:9.1f} {r['g50']:8.1f} {r['gmax']:7.1f}"
+                f" {r['on_standby']:4d}/{args.followers + 1:<2d} {'kept' if r['roles'] else 'LOST':>6}")
+        return
+
+    log(f"{'scenario':<8} {'mode':<13} {'move p50':>8} {'p95':>7} {'p99':>7} {'max':>7}"
+        f" {'hbar p50':>8} {'p99':>7} {'deliv%':>7} {'desync%':>7} {'longest':>8} {'down B/s':>9}")
+    for sc in args.scenarios.split(","):
+        if sc not in SCENARIOS:
+            log(f"unknown scenario {sc}")
+            continue
+        log(f"# {sc}: {SCENARIOS[sc].describe()}")
+        for mode in args.modes.split(","):
+            if mode not in MODES:
+                log(f"unknown mode {mode}")
+                continue
+            try:
+                r = run_one(sc, mode, args.followers, args.duration, args.warmup, args.desync_ms / 1000.0)
+            except (OSError, RuntimeError) as e:
+                log(f"{sc:<8} {mode:<13} failed: {e}")
+                continue
+            log(f"{sc:<8} {mode:<13} {r['p50']:8.1f} {r['p95']:7.1f} {r['p99']:7.1f} {r['max']:7.1f}"
+                f" {r['h50']:8.1f} {r['h99']:7.1f} {r['delivered']:7.1f} {r['desync']:7.2f} {r['longest']:8.1f}"
+                f" {r['wire']:9.0f}")
+
+
+if __name__ == "__main__":
+    main()
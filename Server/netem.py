@@ -0,0 +1,270 @@
+#!/usr/bin/env python3
+"""
+Local network-impairment proxy for the InputSync relay.
+
+Sits between the mod and sync.py and makes a dev box behave like a WAN link:
+
+  mod  --(-Dinputsync.port=25600)-->  netem.py :25600  -->  sync.py :25590
+
+Per direction it applies, in order:
+  - rate:    a bandwidth cap (bytes/s); data queues behind the link like on a real bottleneck
+  - delay:   base one-way delay plus jitter from a distribution (normal, uniform or pareto)
+  - loss:    TCP cannot lose bytes, so a "lost" chunk costs a retransmission timeout instead and
+             holds back everything behind it (head-of-line blocking, as on a real TCP stream)
+  - reorder: UDP only; a datagram is held back by one extra delay so later ones overtake it
+
+UDP datagrams on the same port are forwarded too (loss drops them for real), for the UDP
+side channel. Everything runs locally; no external services, no root, no tc/netem.
+
+Usage:
+  python3 netem.py --listen 25600 --target 25590 --delay 40 --jitter 10 --loss 0.01 --rate 65536
+"""
+import argparse
+import random
+import socket
+import threading
+import time
+import queue
+from dataclasses import dataclass
+
+HOST = "127.0.0.1"
+
+
+def log(*a):
+    print(*a, flush=True)
+
+
+@dataclass
+class Impairment:
+    delay_ms: float = 0.0      # base one-way delay
+    jitter_ms: float = 0.0     # spread of the delay distribution
+    dist: str = "normal"       # normal | uniform | pareto
+    loss: float = 0.0          # probability per chunk/datagram
+    rto_ms: float = 200.0      # TCP: penalty for a lost chunk (one retransmission)
+    reorder: float = 0.0       # UDP: probability a datagram is held back
+    rate: int = 0              # bytes per second, 0 = unlimited
+
+    def sample_delay(self, rng: random.Random) -> float:
+        """One-way delay in seconds."""
+        d = self.delay_ms
+        j = self.jitter_ms
+        if j > 0:
+            if self.dist == "uniform":
+                d += rng.uniform(-j, j)
+            elif self.dist == "pareto":
+                # Mostly small, occasionally very large (bufferbloat / wifi retries)
+                d += j * (rng.paretovariate(2.5) - 1.0)
+            else:
+                d += rng.gauss(0.0, j)
+        return max(0.0, d) / 1000.0
+
+    def describe(self) -> str:
+        parts = [f"delay {self.delay_ms:g}ms"]
+        if self.jitter_ms:
+            parts.append(f"jitter {self.jitter_ms:g}ms {self.dist}")
+        if self.loss:
+            parts.append(f"loss {self.loss * 100:g}%")
+        if self.reorder:
+            parts.append(f"reorder {self.reorder * 100:g}%")
+        if self.rate:
+            parts.append(f"rate {self.rate}B/s")
+        return ", ".join(parts)
+
+
+class Link:
+    """One direction of one connection: computes when each chunk arrives at the far end."""
+
+    def __init__(self, imp: Impairment, seed: int):
+        self.imp = imp
+        self.rng = random.Random(seed)
+        self.link_free_at = 0.0   # bottleneck busy until
+        self.last_arrival = 0.0   # TCP: never deliver before the previous chunk
+
+    def arrival(self, now: float, size: int, ordered: bool) -> float | None:
+        """Arrival time for a chunk sent now, None if dropped (UDP only)."""
+        imp = self.imp
+        depart = now
+        if imp.rate > 0:
+            depart = max(now, self.link_free_at) + size / imp.rate
+            self.link_free_at = depart
+        at = depart + imp.sample_delay(self.rng)
+
+        if imp.loss and self.rng.random() < imp.loss:
+            if not ordered:
+                return None
+            at += imp.rto_ms / 1000.0
+
+        if ordered:
+            at = max(at, self.last_arrival)
+            self.last_arrival = at
+        elif imp.reorder and self.rng.random() < imp.reorder:
+            at += imp.sample_delay(self.rng) + imp.delay_ms / 1000.0
+        return at
+
+
+class Proxy:
+    """TCP (and optionally UDP) impairment proxy. start() returns once listening."""
+
+    def __init__(self, listen_port: int, target_port: int, up: Impairment, down: Impairment | None = None,
+                 udp: bool = False, seed: int = 1, host: str = HOST):
+        self.host = host
+        self.listen_port = listen_port
+        self.target_port = target_port
+        self.up = up                       # client -> relay
+        self.down = down if down is not None else up  # relay -> client
+        self.udp = udp
+        self.seed = seed
+        self.conns = 0
+        self.bytes_up = 0
+        self.bytes_down = 0
+        self.server: socket.socket | None = None
+
+    def start(self):
+        self.server = socket.socket(socket.AF_INET, socket.SOCK_STREAM)
+        self.server.setsockopt(socket.SOL_SOCKET, socket.SO_REUSEADDR, 1)
+        self.server.bind((self.host, self.listen_port))
+        self.server.listen()
+        threading.Thread(target=self.accept_loop, daemon=True).start()
+        if self.udp:
+            threading.Thread(target=self.udp_loop, daemon=True).start()
+
+    def close(self):
+        try:
+            self.server.close()
+        except OSError:
+            pass
+
+    # ===================== TCP =====================
+
+    def accept_loop(self):
+        while True:
+            try:
+                cs, addr = self.server.accept()
+            except OSError:
+                return
+            try:
+                rs = socket.create_connection((self.host, self.target_port))
+            except OSError as e:
+                log(f"[netem] relay unreachable: {e}")
+                cs.close()
+                continue
+            for s in (cs, rs):
+                s.setsockopt(socket.IPPROTO_TCP, socket.TCP_NODELAY, 1)
+            self.conns += 1
+            n = self.conns
+            self.pipe(cs, rs, Link(self.up, self.seed * 1000 + n * 2), up=True)
+            self.pipe(rs, cs, Link(self.down, self.seed * 1000 + n * 2 + 1), up=False)
+
+    def pipe(self, src: socket.socket, dst: socket.socket, link: Link, up: bool):
+        """Reader stamps each chunk with its arrival time; the deliverer sleeps until then."""
+        q: "queue.Queue[tuple[float, bytes] | None]" = queue.Queue()
+
+        def reader():
+            try:
+                while True:
+                    data = src.recv(65536)
+                    if not data:
+                        break
+                    if up:
+                        self.bytes_up += len(data)
+                    else:
+                        self.bytes_down += len(data)
+                    q.put((link.arrival(time.monotonic(), len(data), True), data))
+            except OSError:
+                pass
+            q.put(None)
+
+        def deliverer():
+            try:
+                while True:
+                    item = q.get()
+                    if item is None:
+                        break
+                    at, data = item
+                    wait = at - time.monotonic()
+                    if wait > 0:
+                        time.sleep(wait)
+                    dst.sendall(data)
+            except OSError:
+                pass
+            for s in (src, dst):
+                try:
+                    s.shutdown(socket.SHUT_RDWR)
+                except OSError:
+                    pass
+                s.close()
+
+        threading.Thread(target=reader, daemon=True).start()
+        threading.Thread(target=deliverer, daemon=True).start()
+
+    # ===================== UDP =====================
+
+    def udp_loop(self):
+        """Datagrams from clients go to the relay port; replies go back to the last sender seen."""
+        front = socket.socket(socket.AF_INET, socket.SOCK_DGRAM)
+        front.bind((self.host, self.listen_port))
+        back = socket.socket(socket.AF_INET, socket.SOCK_DGRAM)
+        back.bind((self.host, 0))
+        up = Link(self.up, self.seed * 7919)
+        down = Link(self.down, self.seed * 7919 + 1)
+        client: list = [None]
+
+        def later(at: float, sock: socket.socket, data: bytes, addr):
+            t = threading.Timer(max(0.0, at - time.monotonic()), lambda: sock.sendto(data, addr))
+            t.daemon = True
+            t.start()
+
+        def backward():
+            while True:
+                data, _ = back.recvfrom(65536)
+                at = down.arrival(time.monotonic(), len(data), False)
+                if at is not None and client[0] is not None:
+                    later(at, front, data, client[0])
+
+        threading.Thread(target=backward, daemon=True).start()
+        while True:
+            data, addr = front.recvfrom(65536)
+            client[0] = addr
+            at = up.arrival(time.monotonic(), len(data), False)
+            if at is not None:
+                later(at, back, data, (self.host, self.target_port))
+
+
+def impairment_args(ap: argparse.ArgumentParser):
+    ap.add_argument("--delay", type=float, default=0.0, help="one-way delay in ms")
+    ap.add_argument("--jitter", type=float, default=0.0, help="jitter in ms")
+    ap.add_argument("--dist", choices=("normal", "uniform", "pareto"), default="normal")
+    ap.add_argument("--loss", type=float, default=0.0, help="loss probability (0..1)")
+    ap.add_argument("--rto", type=float, default=200.0, help="TCP loss penalty in ms")
+    ap.add_argument("--reorder", type=float, default=0.0, help="UDP reorder probability (0..1)")
+    ap.add_argument("--rate", type=int, default=0, help="bandwidth cap in bytes/s, 0 = unlimited")
+
+
+def impairment_from(args) -> Impairment:
+    return Impairment(delay_ms=args.delay, jitter_ms=args.jitter, dist=args.dist, loss=args.loss,
+                      rto_ms=args.rto, reorder=args.reorder, rate=args.rate)
+
+
+def main():
+    ap = argparse.ArgumentParser(description="InputSync network-impairment proxy")
+    ap.add_argument("--listen", type=int, default=25600)
+    ap.add_argument("--target", type=int, default=25590)
+    ap.add_argument("--udp", action="store_true", help="also forward UDP on the same ports")
+    ap.add_argument("--seed", type=int, default=1)
+    impairment_args(ap)
+    args = ap.parse_args()
+
+    imp = impairment_from(args)
+    p = Proxy(args.listen, args.target, imp, udp=args.udp, seed=args.seed)
+    p.start()
+    log(f"[netem] {HOST}:{args.listen} -> {HOST}:{args.target} ({imp.describe()}, each direction)")
+    try:
+        while True:
+            time.sleep(10)
+            log(f"[netem] conns {p.conns} up {p.bytes_up}B down {p.bytes_down}B")
+    except KeyboardInterrupt:
+        pass
+
+
+if __name__ == "__main__":
+    main()
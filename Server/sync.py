@@ -1,79 +1,426 @@
 #!/usr/bin/env python3
+import argparse
+import os
+import selectors
 import socket
+import struct
+import subprocess
+import sys
 import threading
 import time
-import queue
+import zlib
+from collections import deque
 from dataclasses import dataclass, field
 
 HOST = "127.0.0.1"   # localhost
 PORT = 25590
 
-SENDQ_MAX = 20000
+# Per-connection outbound caps. Past either one the oldest queued MOVE_ frames are shed (only the
+# newest state matters); a peer still over it is not reading and is disconnected, since reliable
+# frames are never dropped (a resume replays them from its session log).
+SENDQ_MAX = 20000                  # frames
+SENDQ_MAX_BYTES = 2 * 1024 * 1024  # bytes
+
+# Writers drain everything queued per wakeup into one gather write (sendmsg), up to these caps
+WRITE_BATCH_BYTES = 64 * 1024
+WRITE_BATCH_FRAMES = 512       # stays well under IOV_MAX
+HAS_SENDMSG = hasattr(socket.socket, "sendmsg")  # not on Windows: falls back to one joined sendall
+
+# Relay mode: "threads" = reader + writer thread per client, "loop" = one selector thread for all sockets
+MODE = "threads"
+READ_CHUNK = 4096        # loop mode: one recv per readable client per pass
+FRAMES_PER_PASS = 64     # loop mode: frames handled per client per pass, the rest waits for the next pass
+LOG_TAG = ""             # set per shard process (--tag)
 DEBUG_PRINT = False   # set True if you want to see every relayed line
 
+# Session resumption: reliable events are numbered per session and kept for replay
+REPLAY_MAX = 1024      # events kept per session
+SESSION_TTL = 300.0    # seconds a disconnected session is kept around
+HELLO_WAIT = 2.0       # a new connection without HELLO this long is a legacy client
+RELIABLE_PREFIXES = (b"OPEN_", b"CLOSE_", b"INV_", b"INVB_", b"HBAR_", b"CHAT_", b"CMD_")
+
+# Lines are framed, classified and relayed as bytes; only relay-generated lines are ever encoded.
+# Every recipient gets the same immutable frame object (payload + b"\n").
+LEADER_ONLY_PREFIXES = (b"UI_", b"STATE_", b"CHAT_", b"CMD_", b"MOVE_", b"INV_", b"INVB_", b"HBAR_", b"OPEN_", b"CLOSE_",
+                        b"KEYS_", b"KEYMAP_", b"CLK_")
+# Key binding bitset (KEYS_) and its table (KEYMAP_): only for clients with the keys cap
+KEY_PREFIXES = (b"KEYS_", b"KEYMAP_")
+# Attack/use click edges: only for clients with the clk cap (the rest derive clicks from MOVE_).
+# Live only, like MOVE_: a click replayed seconds late after a resume would land somewhere else.
+CLICK_PREFIX = b"CLK_"
+ROLE_LEADER = b"ROLE_LEADER\n"
+ROLE_FOLLOWER = b"ROLE_FOLLOWER\n"
+ZLIB_OK = b"ZLIB_OK\n"
+PONG = b"PONG\n"
+
+# Streaming compression, negotiated per connection (ZLIB_REQ -> ZLIB_OK -> ZLIB_ON).
+# ZDICT must match WireCodec.DICTIONARY in the mod byte for byte.
+ZLIB_ENABLED = True
+ZDICT = (
+    b"UI_CHAR_UI_SCROLL_UI_RELEASE_UI_CLICK_OPEN_MENU\nOPEN_CMD\nOPEN_CHAT\nOPEN_INV\n"
+    b"CLOSE_SCREEN\nCHAT_SEND\nCHAT_SET_HBAR_INV_SEQ_FOCUS_1\nFOCUS_0\nROLE_FOLLOWER\nROLE_LEADER\n"
+    b"UI_MOVE_0.0_0.0\nMOVE_0.000000_0.000000_0.000000_0.000000_0_0_0_0_0_0\n"
+    b"MOVE_-0.000000_0.000000_1.000000_-1.000000_1_0_1_0_0_0\nMOVE_"
+)
+
+# Handshake: HELLO_<session>_<lastSeq>_<version>_<caps> -> WELCOME_<version>_<caps> (common subset).
+# Clients without version/caps (or without HELLO) are version 1 with no caps: plain text, INVB_
+# is transcoded to INV_ lines for them. Cap names must match Protocol.java in the mod.
+PROTO_VERSION = 2
+RELAY_CAPS = frozenset({"zlib", "invb", "keys", "ping", "clk", "takeover"} if ZLIB_ENABLED
+                       else {"invb", "keys", "ping", "clk", "takeover"})
+
 lock = threading.RLock()
 
 @dataclass
+class Session:
+    sid: str
+    next_seq: int = 1
+    log: deque = field(default_factory=lambda: deque(maxlen=REPLAY_MAX))  # (seq, wrapped frame)
+    client: "Client | None" = None
+    detached_at: float = 0.0
+    caps: frozenset = frozenset()  # of the last client attached, decides the form events are logged in
+
+@dataclass(eq=False)  # identity semantics: hashable, and "c in clients" is a pointer compare
 class Client:
     sock: socket.socket
     addr: tuple
-    sendq: "queue.Queue[str]" = field(default_factory=lambda: queue.Queue(maxsize=SENDQ_MAX))
     alive: bool = True
     last_focus_ts: float = 0.0
     focused: bool = False
+    session: Session | None = None  # None = legacy client, no HELLO (or not yet, see HELLO_WAIT)
+    connected_at: float = field(default_factory=time.time)
+    proto: int = 1
+    caps: frozenset = frozenset()   # settled in the handshake
+    zin: "zlib._Decompress | None" = None
+    zout: "zlib._Compress | None" = None
+    raw_in: int = 0
+    wire_in: int = 0
+    raw_out: int = 0
+    wire_out: int = 0
+    zcpu_ns: int = 0
+    frames_out: int = 0
+    writes: int = 0     # writer wakeups that sent something
+    syscalls: int = 0   # sendmsg/sendall calls
+    rbuf: bytearray = field(default_factory=bytearray)  # received, not yet framed
+    # Outbound queue (both modes): appended by any thread, drained by the writer thread or the loop
+    outq: deque = field(default_factory=deque)
+    qcond: threading.Condition = field(default_factory=threading.Condition)  # guards outq and qbytes
+    qbytes: int = 0
+    shed: int = 0             # MOVE_ frames dropped for a slow reader
+    overflowed: bool = False  # over the caps with nothing left to shed, being disconnected
+    # loop mode only (owned by the loop thread)
+    wpending: list = field(default_factory=list)  # batch the socket has not taken yet
+    wzlib: bool = False       # start deflating once wpending is written (it ends with ZLIB_OK)
+    want_write: bool = False
+    flush_pending: bool = False
+    mirror: bool = False      # a standby relay's link, not a client (see HOT STANDBY)
+    mcast: bool = False       # gets MOVE_ by multicast (confirmed with MCAST_OK), not over TCP
 
 clients: list[Client] = []
 source: Client | None = None  # leader
+sessions: dict[str, Session] = {}
+
+# Leadership epoch, one per leader in turn. Takeover clients (cap "takeover") capture as soon as
+# they get focus and claim the next epoch with FOCUS_1_<epoch>; TAKEOVER_OK/TAKEOVER_NO tells them
+# to flush or drop what they held. EPOCH_<n> follows every role line so they know where we are.
+leader_epoch = 0
+epoch_source: Client | None = None
+
+
+@dataclass
+class GroupState:
+    """
+    What the leader last showed this group, as the frames that set it. Pushed to every (re)joining
+    follower as one snapshot right after its replay, so it is in sync after one round trip
+    instead of waiting for the leader's next events.
+    """
+    move: bytes | None = None
+    screen: bytes | None = None   # OPEN_ frame while a screen is open
+    chat: bytes | None = None     # CHAT_SET_ while the chat screen is open
+    hotbar: bytes | None = None
+    keymap: bytes | None = None   # KEYMAP_/KEYS_ belong to session keys_sid's binding table
+    keys: bytes | None = None
+    keys_sid: str | None = None
+    owner: str | None = None      # session of the leader that set screen/chat/hotbar/move
+
+    def update(self, sid: str | None, frame: bytes) -> bool:
+        """Leader frame -> cache; False if it is not state. Caller holds the lock."""
+        self.owner = sid
+        if frame.startswith(b"MOVE_"):
+            self.move = frame
+        elif frame.startswith(b"HBAR_"):
+            self.hotbar = frame
+        elif frame.startswith(b"OPEN_"):
+            self.screen = frame
+            self.chat = None
+        elif frame.startswith(b"CLOSE_") or frame == b"CHAT_SEND\n":
+            self.screen = self.chat = None
+        elif frame.startswith(b"CHAT_SET_"):
+            self.chat = frame
+        elif frame.startswith(b"KEYMAP_"):
+            self.keymap, self.keys, self.keys_sid = frame, None, sid
+        elif frame.startswith(b"KEYS_"):
+            self.keys = frame
+        else:
+            return False
+        return True
+
+    def new_leader(self, sid: str | None):
+        """
+        Another leader: what the previous one showed is not true any more (it may have had a screen
+        open that the new one does not). Kept when the same session is back, e.g. after a failover.
+        """
+        if sid is not None and sid == self.owner:
+            return
+        self.move = self.screen = self.chat = self.hotbar = None
+        self.owner = sid
+
+    def snapshot(self, c: Client) -> bytes:
+        """Everything the follower c needs, in apply order, as one write. Caller holds the lock."""
+        with_keys = "keys" in c.caps and self.keys_sid is not None and self.keys_sid == sid_of(source)
+        return self.dump(with_keys)
+
+    def dump(self, with_keys: bool = True) -> bytes:
+        frames = [self.screen, self.chat, self.hotbar, self.move]
+        if with_keys:
+            frames += [self.keymap, self.keys]
+        return b"".join(f for f in frames if f is not None)
+
+    def describe(self) -> str:
+        parts = [f.rstrip(b"\n").decode("utf-8", "replace")[:40]
+                 for f in (self.screen, self.chat, self.hotbar, self.move, self.keys) if f is not None]
+        return " | ".join(parts) if parts else "empty"
+
+
+state = GroupState()  # this process is one sync group (see --shards)
+
+
+def sid_of(c: Client | None) -> str | None:
+    return c.session.sid if c is not None and c.session is not None else None
+
+# Loop mode state
+sel: selectors.BaseSelector | None = None
+loop_ident: int = 0
+wake_w: socket.socket | None = None
+dirty: deque = deque()  # clients with frames queued since the loop last flushed
 
 
 def log(*a):
-    print(*a, flush=True)
+    if LOG_TAG:
+        print(f"[{LOG_TAG}]", *a, flush=True)
+    else:
+        print(*a, flush=True)
 
 
-def send_line(c: Client, line: str):
-    """Enqueue a line for async send. Drops if queue is full (shouldn't happen on localhost)."""
+def send_frame(c: Client, frame: bytes):
+    """Enqueue one newline-terminated frame for async send, within the SENDQ_MAX caps."""
     if not c.alive:
         return
-    try:
-        c.sendq.put_nowait(line.rstrip("\n") + "\n")
-    except queue.Full:
-        # If this happens, the client is not reading or is overloaded.
-        # Dropping is better than stalling the entire relay.
-        pass
+    with c.qcond:
+        if c.overflowed:
+            return
+        kick = over_caps(c, frame) and (not shed_moves_locked(c, frame) or over_caps(c, frame))
+        if kick:
+            c.overflowed = True
+        else:
+            c.outq.append(frame)
+            c.qbytes += len(frame)
+            if sel is None:
+                c.qcond.notify()
+    if kick:
+        # Not reading: dropping a reliable frame would break its sequence, so let it resume instead
+        log(f"[-] {c.addr} send queue full ({c.qbytes}B, {len(c.outq)} frames, {c.shed} MOVE_ shed), disconnecting")
+        try:
+            c.sock.shutdown(socket.SHUT_RDWR)  # its reader/loop drops it
+        except OSError:
+            pass
+        return
+    if sel is not None and not c.flush_pending:
+        c.flush_pending = True
+        dirty.append(c)
+        if threading.get_ident() != loop_ident:
+            loop_wakeup()
+
+
+def over_caps(c: Client, frame: bytes) -> bool:
+    return len(c.outq) >= SENDQ_MAX or c.qbytes + len(frame) > SENDQ_MAX_BYTES
+
+
+def shed_moves_locked(c: Client, frame: bytes) -> bool:
+    """Drop queued MOVE_ frames, oldest first, until frame fits (under qcond). False if there were none."""
+    frames = len(c.outq) + 1 - SENDQ_MAX
+    excess = c.qbytes + len(frame) - SENDQ_MAX_BYTES
+    kept = deque()
+    shed = 0
+    for f in c.outq:
+        if (frames > 0 or excess > 0) and f.startswith(b"MOVE_"):
+            frames -= 1
+            excess -= len(f)
+            c.qbytes -= len(f)
+            shed += 1
+        else:
+            kept.append(f)
+    if shed:
+        c.outq = kept
+        c.shed += shed
+    return shed > 0
+
+
+def dequeue(c: Client) -> bytes | None:
+    with c.qcond:
+        if not c.outq:
+            return None
+        frame = c.outq.popleft()
+        c.qbytes -= len(frame)
+        return frame
+
+
+def send_line(c: Client, line: str):
+    """Enqueue a relay-generated text line."""
+    send_frame(c, line.encode("utf-8") + b"\n")
 
 
 def writer_loop(c: Client):
     """Dedicated writer thread per client; prevents one slow client from blocking others."""
     try:
         while c.alive:
+            with c.qcond:
+                while c.alive and not c.outq:
+                    c.qcond.wait()  # drop_client wakes us
+            frame = dequeue(c)
+            if frame is None:
+                break
+            bufs, start_zlib = build_batch(c, frame, lambda: dequeue(c))
             try:
-                line = c.sendq.get(timeout=0.5)
-            except queue.Empty:
-                continue
-            if not line:
-                continue
-            try:
-                c.sock.sendall(line.encode("utf-8"))
+                send_gather(c, bufs)
             except OSError:
                 break
+            if start_zlib:
+                start_deflate(c)
     finally:
         # Let the reader / server cleanup handle removal.
         c.alive = False
 
 
+def build_batch(c: Client, first: bytes, pop) -> tuple[list, bool]:
+    """
+    Collect first plus whatever pop() returns (None = empty) up to the batch caps, deflated if on.
+    ZLIB_OK ends a batch since it must go out plain; the flag says to start deflating after it.
+    """
+    bufs = [first]
+    size = len(first)
+    start_zlib = first == ZLIB_OK and c.zout is None
+    while not start_zlib and size < WRITE_BATCH_BYTES and len(bufs) < WRITE_BATCH_FRAMES:
+        frame = pop()
+        if frame is None:
+            break
+        bufs.append(frame)
+        size += len(frame)
+        start_zlib = frame == ZLIB_OK and c.zout is None
+
+    c.frames_out += len(bufs)
+    c.raw_out += size
+    if c.zout is not None:
+        # One sync flush per batch instead of per line
+        t0 = time.thread_time_ns()
+        bufs = [c.zout.compress(b"".join(bufs)) + c.zout.flush(zlib.Z_SYNC_FLUSH)]
+        c.zcpu_ns += time.thread_time_ns() - t0
+    return bufs, start_zlib
+
+
+def start_deflate(c: Client):
+    # ZLIB_OK was the last plain line on this connection
+    c.zout = zlib.compressobj(1, zlib.DEFLATED, 15, 8, zlib.Z_DEFAULT_STRATEGY, ZDICT)
+
+
+def trim_sent(bufs: list, n: int) -> list:
+    """What is left of bufs after the socket took n bytes."""
+    i = 0
+    while i < len(bufs) and n >= len(bufs[i]):
+        n -= len(bufs[i])
+        i += 1
+    rest = bufs[i:]
+    if n:
+        rest[0] = memoryview(rest[0])[n:]
+    return rest
+
+
+def send_gather(c: Client, bufs: list):
+    """Write all buffers with as few syscalls as possible (one, unless the kernel takes a partial write)."""
+    c.writes += 1
+    if not HAS_SENDMSG:
+        data = b"".join(bufs)
+        c.sock.sendall(data)
+        c.syscalls += 1
+        c.wire_out += len(data)
+        return
+    while bufs:
+        n = c.sock.sendmsg(bufs)
+        c.syscalls += 1
+        c.wire_out += n
+        bufs = trim_sent(bufs, n)
+
+
+def tcp_segs_out(sock: socket.socket) -> int | None:
+    """Packets sent on this socket (Linux TCP_INFO tcpi_segs_out), None where unavailable."""
+    try:
+        info = sock.getsockopt(socket.IPPROTO_TCP, socket.TCP_INFO, 144)
+        return struct.unpack_from("I", info, 136)[0] if len(info) >= 140 else None
+    except (AttributeError, OSError):
+        return None
+
+
+def epoch_locked() -> int:
+    """Current leadership epoch; a leader change since the last call starts the next one."""
+    global leader_epoch, epoch_source
+    if source is not epoch_source:
+        epoch_source = source
+        leader_epoch += 1
+        state.new_leader(sid_of(source))
+    return leader_epoch
+
+
 def broadcast_roles():
     """Tell each client whether they're leader/follower."""
     global source
     with lock:
         s = source
+        epoch = epoch_locked()
         snapshot = list(clients)
     for c in snapshot:
         try:
-            send_line(c, "ROLE_LEADER" if (s is not None and c is s) else "ROLE_FOLLOWER")
+            send_frame(c, ROLE_LEADER if (s is not None and c is s) else ROLE_FOLLOWER)
+            if "takeover" in c.caps:
+                send_line(c, f"EPOCH_{epoch}")
         except Exception:
             pass
 
 
+def claim_leader_locked(c: Client, claim: int):
+    """
+    FOCUS_1_<epoch>: c got focus and already captures as leader of <epoch>, holding the lines.
+    Answered before the role broadcast. A claim made before c heard of the current leader loses
+    if that leader still has focus (two windows raced; the first one processed keeps it).
+    """
+    epoch = epoch_locked()
+    c.focused = True
+    if claim <= epoch and source is not None and source is not c and source.focused:
+        send_line(c, f"TAKEOVER_NO_{epoch}_{claim}")
+        log(f"[TAKEOVER] {c.addr} claim {claim} stale (epoch {epoch}), rejected")
+        return
+
+    c.last_focus_ts = time.time()
+    pick_source_locked()
+    ok = source is c
+    send_line(c, f"TAKEOVER_{'OK' if ok else 'NO'}_{epoch_locked()}_{claim}")
+    log(f"[TAKEOVER] {c.addr} claim {claim} {'confirmed' if ok else 'rejected'} (epoch {leader_epoch})")
+    if ok:
+        set_source_locked(c)
+    else:
+        broadcast_roles()
+
+
 def pick_source_locked():
     """Pick most recently focused; fallback to first connected."""
     global source
@@ -81,6 +428,11 @@ def pick_source_locked():
         source = None
         return
 
+    if preferred_leader is not None and time.time() < preferred_until:
+        # Failover/handback: keep the role free for the previous leader's session
+        source = next((c for c in clients if sid_of(c) == preferred_leader), None)
+        return
+
     best = None
     best_ts = -1.0
     for c in clients:
@@ -96,6 +448,7 @@ def set_source_locked(new_source: Client | None):
     global source
     source = new_source
     broadcast_roles()
+    announce_leader_locked()
     if source is not None:
         try:
             idx = clients.index(source)
@@ -111,8 +464,23 @@ def drop_client(c: Client):
     with lock:
         if c in clients:
             clients.remove(c)
+        if c in mirrors:
+            mirrors.remove(c)
+            log(f"[MIRROR] standby {c.addr} detached")
         was_source = (source is c)
         c.alive = False
+        if c.session is not None and c.session.client is c:
+            # Keep the session so the client can resume; events keep being logged for it
+            c.session.client = None
+            c.session.detached_at = time.time()
+        if sel is not None:
+            try:
+                sel.unregister(c.sock)
+            except (KeyError, ValueError):
+                pass
+        else:
+            with c.qcond:
+                c.qcond.notify()  # wake the writer so it exits
         try:
             c.sock.close()
         except OSError:
@@ -125,24 +493,191 @@ def drop_client(c: Client):
             broadcast_roles()
 
 
-def broadcast(line: str, exclude: Client | None = None):
+def expire_sessions_locked():
+    now = time.time()
+    for sid in [sid for sid, s in sessions.items()
+                if s.client is None and now - s.detached_at > SESSION_TTL]:
+        del sessions[sid]
+
+
+def sequence_locked(s: Session, frame: bytes) -> bytes:
+    """Number a reliable event for one session and remember it for replay."""
+    wrapped = b"SEQ_%d_%b" % (s.next_seq, frame)
+    s.log.append((s.next_seq, wrapped))
+    s.next_seq += 1
+    return wrapped
+
+
+def broadcast(frame: bytes | str, exclude: Client | None = None):
+    """Relay one newline-terminated frame; str lines from the console are encoded once here."""
+    if isinstance(frame, str):
+        frame = frame.encode("utf-8") + b"\n"
+    reliable = frame.startswith(RELIABLE_PREFIXES)
+    if not reliable:
+        keys = frame.startswith(KEY_PREFIXES)
+        clicks = frame.startswith(CLICK_PREFIX)
+        multicast = mcast_sock is not None and frame.startswith(b"MOVE_")
+        if multicast:
+            mcast_send(frame)
+        with lock:
+            snapshot = list(clients)
+        for c in snapshot:
+            if exclude is not None and c is exclude:
+                continue
+            if keys and "keys" not in c.caps:
+                continue
+            if clicks and "clk" not in c.caps:
+                continue
+            if multicast and c.mcast:
+                continue
+            send_frame(c, frame)
+        return
+
+    # Peers without the invb cap get the batch as individual INV_ lines (built once, on demand)
+    legacy = None
+    if frame.startswith(b"INVB_"):
+        legacy = invb_to_inv(frame)
+
+    # Numbering and enqueueing happen under the lock so every session sees its seqs in order
     with lock:
-        snapshot = list(clients)
-    for c in snapshot:
-        if exclude is not None and c is exclude:
-            continue
-        send_line(c, line)
+        now = time.time()
+        expire_sessions_locked()
+        sender_session = exclude.session if exclude is not None else None
+        for c in clients:
+            if exclude is not None and c is exclude:
+                continue
+            if c.session is None and now - c.connected_at < HELLO_WAIT:
+                continue  # HELLO pending: a resume replays it from the session log, a new session gets the snapshot
+            frames = legacy if (legacy is not None and "invb" not in c.caps) else (frame,)
+            for f in frames:
+                send_frame(c, sequence_locked(c.session, f) if c.session is not None else f)
+        # Disconnected sessions still get the event logged so a resume can replay it
+        for s in sessions.values():
+            if s.client is None and s is not sender_session:
+                for f in (legacy if (legacy is not None and "invb" not in s.caps) else (frame,)):
+                    sequence_locked(s, f)
 
 
-def handle_line(c: Client, line: str):
-    """Process one incoming line from a client."""
+def invb_to_inv(frame: bytes) -> list[bytes]:
+    """INVB_<syncId>_<slot>:<button>:<action>,... -> [INV_<syncId>_<slot>_<button>_<action>, ...]"""
+    head, _, clicks = frame.rstrip(b"\n").partition(b"_")[2].partition(b"_")
+    prefix = b"INV_" + head + b"_"
+    return [prefix + click.replace(b":", b"_") + b"\n" for click in clicks.split(b",") if click]
+
+
+def negotiate(c: Client, version: int, caps: str) -> bytes:
+    """Settle the connection on the best common protocol; returns the WELCOME frame."""
+    c.proto = max(1, min(version, PROTO_VERSION))
+    offered = (RELAY_CAPS | {"mcast"}) if mcast_sock is not None else RELAY_CAPS
+    c.caps = frozenset(n for n in caps.split(",") if n) & offered
+    return f"WELCOME_{c.proto}_{','.join(sorted(c.caps))}\n".encode("utf-8")
+
+
+def handle_hello(c: Client, sid: str, last_seq: int, welcome: bytes | None = None):
+    """HELLO_<session>_<lastSeq>: attach to (or create) a session, replay what was missed, then snapshot."""
+    with lock:
+        if welcome is not None:
+            send_frame(c, welcome)  # before anything whose form depends on the caps
+            if "mcast" in c.caps:
+                send_line(c, f"MCAST_{mcast_group[0]}_{mcast_group[1]}_{mcast_tag}")
+        expire_sessions_locked()
+        s = sessions.get(sid)
+        if s is None:
+            s = Session(sid=sid)
+            sessions[sid] = s
+            missed = None
+        else:
+            if s.client is not None and s.client is not c:
+                s.client.session = None  # stale connection; its reader will drop it
+            missed = [w for (q, w) in s.log if q > last_seq]
+            if s.log and s.log[0][0] > last_seq + 1:
+                log(f"[SESSION] {sid} replay log overflowed, {s.log[0][0] - last_seq - 1} events lost")
+        s.client = c
+        s.caps = c.caps
+        c.session = s
+
+        global preferred_leader
+        if preferred_leader is not None and sid == preferred_leader:
+            preferred_leader = None  # the leader from before the failover is back
+            if source is not c:
+                set_source_locked(c)
+        elif source is c:
+            announce_leader_locked()  # its session id is known only now
+
+        if missed is None:
+            send_line(c, "SESSION_NEW")
+        else:
+            send_line(c, f"SESSION_RESUMED_{len(missed)}")
+            for w in missed:
+                send_frame(c, w)
+
+        # Fresh state snapshot after the replay
+        send_frame(c, ROLE_LEADER if source is c else ROLE_FOLLOWER)
+        epoch = epoch_locked()  # also settles the state cache on a leader change
+        if "takeover" in c.caps:
+            send_line(c, f"EPOCH_{epoch}")
+        if source is not c:
+            snap = state.snapshot(c)
+            if snap:
+                send_frame(c, snap)
+
+    if missed is None:
+        log(f"[SESSION] {sid} new")
+    else:
+        log(f"[SESSION] {sid} resumed at {last_seq}, replayed {len(missed)}")
+
+
+def handle_line(c: Client, frame: bytes):
+    """Process one newline-terminated frame from a client. Relayed frames are never decoded."""
     global source
 
-    if not line:
+    if frame == b"\n":
+        return
+
+    if frame == b"PING\n":
+        send_frame(c, PONG)
+        return
+
+    if c.mirror:
+        mirror_frame(frame)
+        return
+
+    if frame == b"MIRROR_HELLO\n":
+        attach_mirror(c)
+        return
+
+    if frame == b"MCAST_OK\n" or frame == b"MCAST_OFF\n":
+        c.mcast = frame == b"MCAST_OK\n" and mcast_sock is not None
+        log(f"[MCAST] {c.addr} {'on' if c.mcast else 'off, back to TCP'}")
+        return
+
+    if frame == b"ZLIB_REQ\n":
+        if ZLIB_ENABLED:
+            send_frame(c, ZLIB_OK)
+        return
+
+    if frame.startswith(b"HELLO_"):
+        p = frame.decode("utf-8", "replace").strip().split("_")
+        if len(p) >= 3:
+            try:
+                # Version 1 clients send only session and lastSeq and get no WELCOME
+                welcome = negotiate(c, int(p[3]), p[4] if len(p) >= 5 else "") if len(p) >= 4 else None
+                handle_hello(c, p[1], int(p[2]), welcome)
+            except ValueError:
+                pass
         return
 
     # Focus updates (server-only)
-    if line == "FOCUS_1":
+    if frame.startswith(b"FOCUS_1_"):
+        try:
+            claim = int(frame[len(b"FOCUS_1_"):])
+        except ValueError:
+            return
+        with lock:
+            claim_leader_locked(c, claim)
+        return
+
+    if frame == b"FOCUS_1\n":
         with lock:
             c.focused = True
             c.last_focus_ts = time.time()
@@ -154,7 +689,7 @@ def handle_line(c: Client, line: str):
                 broadcast_roles()
         return
 
-    if line == "FOCUS_0":
+    if frame == b"FOCUS_0\n":
         with lock:
             c.focused = False
             # If leader unfocused, pick best available and announce
@@ -167,50 +702,98 @@ def handle_line(c: Client, line: str):
 
     with lock:
         is_source = (source is not None and c is source)
+        if is_source and state.update(sid_of(c), frame):
+            for m in mirrors:
+                send_frame(m, frame)
 
     # Only accept these from source temporairly
-    if line.startswith(("UI_", "STATE_", "CHAT_", "CMD_", "MOVE_", "INV_", "HBAR_", "OPEN_", "CLOSE_", "PAUSE", "RESUME", "TOGGLE_")):
-        if not is_source and line.startswith(("UI_", "STATE_", "CHAT_", "CMD_", "MOVE_", "INV_", "HBAR_", "OPEN_", "CLOSE_")):
-            return
+    if not is_source and frame.startswith(LEADER_ONLY_PREFIXES):
+        return
 
     if DEBUG_PRINT:
-        log(line)
+        log(frame.decode("utf-8", "replace").rstrip())
 
     # Relay to everyone else
-    broadcast(line, exclude=c)
+    broadcast(frame, exclude=c)
+
+
+def attach_client(c: Client):
+    """Register a new connection and settle roles (both modes)."""
+    c.sock.setsockopt(socket.IPPROTO_TCP, socket.TCP_NODELAY, 1)
+
+    # Add client & select leader if needed
+    with lock:
+        clients.append(c)
+        if source is None:
+            pick_source_locked()
+            set_source_locked(source)
+        else:
+            broadcast_roles()
+
+    log(f"[+] {c.addr} connected (clients={len(clients)})")
+
+
+def feed(c: Client, data: bytes):
+    """Append received wire bytes (inflated if compression is on) to the frame buffer."""
+    c.wire_in += len(data)
+    if c.zin is not None:
+        data = inflate(c, data)
+    c.raw_in += len(data)
+    c.rbuf += data
+
+
+def process_frames(c: Client, limit: int = 0) -> bool:
+    """
+    Offset scanner: handle complete frames in c.rbuf (at most limit, 0 = all) and drop the
+    consumed bytes once. Returns True if complete frames are left over.
+    """
+    buf = c.rbuf
+    start = 0
+    handled = 0
+    more = False
+    while True:
+        nl = buf.find(b"\n", start)
+        if nl < 0:
+            break
+        if limit and handled >= limit:
+            more = True
+            break
+        end = nl + 1
+        if nl > start and buf[nl - 1] == 0x0D:  # tolerate CRLF
+            frame = bytes(buf[start:nl - 1]) + b"\n"
+        else:
+            frame = bytes(buf[start:end])
+        start = end
+        if frame == b"ZLIB_ON\n" and c.zin is None and ZLIB_ENABLED:
+            # Everything after ZLIB_ON (including what is already buffered) is deflated
+            c.zin = zlib.decompressobj(zdict=ZDICT)
+            buf = c.rbuf = bytearray(inflate(c, bytes(buf[start:])))
+            start = 0
+            log(f"[ZLIB] {c.addr} compression on")
+            continue
+        handle_line(c, frame)
+        handled += 1
+    if start:
+        del buf[:start]
+    return more
 
 
 def client_loop(conn: socket.socket, addr):
-    global source
     c = Client(sock=conn, addr=addr)
 
     try:
-        conn.setsockopt(socket.IPPROTO_TCP, socket.TCP_NODELAY, 1)
-
-        # Add client & select leader if needed
-        with lock:
-            clients.append(c)
-            if source is None:
-                pick_source_locked()
-                set_source_locked(source)
-            else:
-                broadcast_roles()
-
+        attach_client(c)
         threading.Thread(target=writer_loop, args=(c,), daemon=True).start()
 
-        log(f"[+] {addr} connected (clients={len(clients)})")
-
-        buf = b""
         while c.alive:
             data = conn.recv(4096)
             if not data:
                 break
-            buf += data
-            while b"\n" in buf:
-                raw, buf = buf.split(b"\n", 1)
-                line = raw.decode("utf-8", "replace").strip()
-                handle_line(c, line)
+            feed(c, data)
+            process_frames(c)
 
+    except zlib.error as e:
+        log(f"[ZLIB] {addr} bad stream: {e}")
     except OSError:
         pass
     finally:
@@ -218,16 +801,427 @@ def client_loop(conn: socket.socket, addr):
         drop_client(c)
 
 
+def inflate(c: Client, data: bytes) -> bytes:
+    t0 = time.thread_time_ns()
+    out = c.zin.decompress(data)
+    c.zcpu_ns += time.thread_time_ns() - t0
+    return out
+
+
+def ratio(raw: int, wire: int) -> str:
+    return f"{raw / wire:.2f}x" if wire else "-"
+
+
 def accept_loop(server_sock: socket.socket):
     while True:
         conn, addr = server_sock.accept()
+        if standby:
+            refuse(conn)
+            continue
         threading.Thread(target=client_loop, args=(conn, addr), daemon=True).start()
 
 
+# ===================== EVENT LOOP MODE =====================
+# One thread, one selector, every socket non-blocking. Each pass a readable client gets one recv
+# and at most FRAMES_PER_PASS handled frames, so a chatty client cannot starve the others; its
+# leftover frames are handled on the next pass (without reading more from it first).
+
+def event_loop(server_sock: socket.socket):
+    global sel, loop_ident, wake_w
+    loop_ident = threading.get_ident()
+    wake_r, wake_w = socket.socketpair()
+    wake_r.setblocking(False)
+    wake_w.setblocking(False)
+    server_sock.setblocking(False)
+    selector = selectors.DefaultSelector()
+    selector.register(server_sock, selectors.EVENT_READ, "accept")
+    selector.register(wake_r, selectors.EVENT_READ, "wake")
+    sel = selector
+
+    backlog: list[Client] = []
+    while True:
+        events = selector.select(0 if backlog else None)
+        ready = dict.fromkeys(backlog)
+        backlog = []
+
+        for key, mask in events:
+            d = key.data
+            if d == "accept":
+                loop_accept(server_sock)
+                continue
+            if d == "wake":
+                try:
+                    while wake_r.recv(512):
+                        pass
+                except (BlockingIOError, InterruptedError):
+                    pass
+                continue
+            if mask & selectors.EVENT_WRITE:
+                loop_flush(d)
+            if mask & selectors.EVENT_READ and d.alive and d not in ready:
+                if loop_read(d):
+                    ready[d] = None
+                else:
+                    loop_close(d)
+
+        for c in ready:
+            if not c.alive:
+                continue
+            try:
+                if process_frames(c, FRAMES_PER_PASS):
+                    backlog.append(c)
+            except zlib.error as e:
+                log(f"[ZLIB] {c.addr} bad stream: {e}")
+                loop_close(c)
+
+        while dirty:
+            c = dirty.popleft()
+            c.flush_pending = False
+            if c.alive:
+                loop_flush(c)
+
+
+def loop_wakeup():
+    try:
+        wake_w.send(b"\0")
+    except (BlockingIOError, OSError):
+        pass  # already signalled
+
+
+def loop_accept(server_sock: socket.socket):
+    while True:
+        try:
+            conn, addr = server_sock.accept()
+        except (BlockingIOError, InterruptedError):
+            return
+        if standby:
+            refuse(conn)
+            continue
+        conn.setblocking(False)
+        c = Client(sock=conn, addr=addr)
+        sel.register(conn, selectors.EVENT_READ, c)
+        attach_client(c)
+
+
+def loop_read(c: Client) -> bool:
+    """One recv; False when the client is gone."""
+    try:
+        data = c.sock.recv(READ_CHUNK)
+    except (BlockingIOError, InterruptedError):
+        return True
+    except OSError:
+        return False
+    if not data:
+        return False
+    try:
+        feed(c, data)
+    except zlib.error as e:
+        log(f"[ZLIB] {c.addr} bad stream: {e}")
+        return False
+    return True
+
+
+def loop_flush(c: Client):
+    """Write queued frames without blocking; what the socket does not take waits for EVENT_WRITE."""
+    try:
+        while True:
+            if not c.wpending:
+                frame = dequeue(c)
+                if frame is None:
+                    break
+                c.wpending, c.wzlib = build_batch(c, frame, lambda: dequeue(c))
+                c.writes += 1
+            try:
+                if HAS_SENDMSG:
+                    n = c.sock.sendmsg(c.wpending)
+                else:
+                    n = c.sock.send(b"".join(c.wpending))
+            except (BlockingIOError, InterruptedError):
+                n = 0
+            c.syscalls += 1
+            c.wire_out += n
+            c.wpending = trim_sent(c.wpending, n)
+            if c.wpending:
+                break  # socket buffer full
+            if c.wzlib:
+                c.wzlib = False
+                start_deflate(c)
+    except OSError:
+        loop_close(c)
+        return
+
+    want = bool(c.wpending)
+    if want != c.want_write and c.alive:
+        c.want_write = want
+        sel.modify(c.sock, selectors.EVENT_READ | (selectors.EVENT_WRITE if want else 0), c)
+
+
+def loop_close(c: Client):
+    if not c.alive:
+        return
+    log(f"[-] {c.addr} disconnected")
+    drop_client(c)
+
+
+# ===================== HOT STANDBY =====================
+# A standby relay (--mirror-of HOST:PORT) keeps one link to the active relay: it sends
+# MIRROR_HELLO, then receives the leader's session id (MIRROR_LEADER_<sid>) and every leader frame
+# that updates the group state, and PINGs the link. While the link is up it refuses clients, so
+# they reach it only once the active relay is gone (clients try their relay list in order).
+# Then it serves them with the mirrored state and gives the leader role back to the same session.
+# When the link comes back (the primary was restarted) it hands its state and leader back over
+# the link and drops its clients, which reconnect to the primary first.
+
+MIRROR_PING = 0.25   # seconds between link probes
+MIRROR_DEAD = 0.6    # link silent this long = active relay gone (below the clients' 0.8s, so we open first)
+MIRROR_RETRY = 0.5
+LEADER_GRACE = 2.0   # after a failover, keep the role free this long for the previous leader
+
+mirror_of: tuple[str, int] | None = None
+standby = False                # refusing clients while the active relay is up
+mirrors: list[Client] = []     # standby relays attached to us
+preferred_leader: str | None = None
+preferred_until = 0.0
+
+
+def refuse(conn: socket.socket):
+    """Reset right away so the client moves on to its next relay without waiting."""
+    try:
+        conn.setsockopt(socket.SOL_SOCKET, socket.SO_LINGER, struct.pack("ii", 1, 0))
+    except OSError:
+        pass
+    conn.close()
+
+
+def mirror_leader_frame() -> bytes:
+    return f"MIRROR_LEADER_{sid_of(source) or ''}\n".encode("utf-8")
+
+
+def announce_leader_locked():
+    for m in mirrors:
+        send_frame(m, mirror_leader_frame())
+
+
+def attach_mirror(c: Client):
+    """Active side: a standby linked up; from now on it gets the group state, not client traffic."""
+    with lock:
+        if c in clients:
+            clients.remove(c)
+        c.mirror = True
+        mirrors.append(c)
+        if source is c:
+            pick_source_locked()
+            set_source_locked(source)
+        send_frame(c, mirror_leader_frame() + state.dump())
+    log(f"[MIRROR] standby {c.addr} attached")
+
+
+def mirror_frame(frame: bytes):
+    """Group state over a mirror link (either direction): leader session id or a state frame."""
+    global preferred_leader, preferred_until
+    with lock:
+        if frame.startswith(b"MIRROR_LEADER_"):
+            preferred_leader = frame[len(b"MIRROR_LEADER_"):].rstrip(b"\n").decode("utf-8", "replace") or None
+            preferred_until = time.time() + LEADER_GRACE
+        elif not frame.startswith((b"PONG", b"ROLE_", b"WELCOME_")):
+            state.update(preferred_leader, frame)
+
+
+def set_standby(on: bool):
+    global standby, preferred_until
+    with lock:
+        if on == standby:
+            return
+        standby = on
+        kick = list(clients) if on else []
+        if not on:
+            preferred_until = time.time() + LEADER_GRACE
+    if on:
+        log(f"[MIRROR] standby for {mirror_of[0]}:{mirror_of[1]}" + (f", handing back {len(kick)} clients" if kick else ""))
+    else:
+        log(f"[MIRROR] {mirror_of[0]}:{mirror_of[1]} unreachable, serving clients (leader session {preferred_leader})")
+        t = threading.Timer(LEADER_GRACE, regrant_leader)
+        t.daemon = True
+        t.start()
+    for c in kick:
+        try:
+            c.sock.shutdown(socket.SHUT_RDWR)  # its reader/loop drops it; clients reconnect to the primary
+        except OSError:
+            pass
+
+
+def regrant_leader():
+    """The previous leader did not come back within the grace period: pick one the usual way."""
+    with lock:
+        if source is None and clients:
+            pick_source_locked()
+            set_source_locked(source)
+
+
+def mirror_loop():
+    host, port = mirror_of
+    while True:
+        try:
+            sock = socket.create_connection((host, port), timeout=MIRROR_DEAD)
+        except OSError:
+            set_standby(False)
+            time.sleep(MIRROR_RETRY)
+            continue
+        try:
+            sock.setsockopt(socket.IPPROTO_TCP, socket.TCP_NODELAY, 1)
+            sock.settimeout(MIRROR_PING / 2)
+            hello = b"MIRROR_HELLO\n"
+            with lock:
+                if not standby and clients:
+                    hello += mirror_leader_frame() + state.dump()  # hand back what we served
+            sock.sendall(hello)
+
+            buf = bytearray()
+            last_rx = time.monotonic()
+            last_ping = 0.0
+            linked = False
+            while True:
+                now = time.monotonic()
+                if now - last_rx > MIRROR_DEAD:
+                    log(f"[MIRROR] {host}:{port} silent")
+                    break
+                if now - last_ping >= MIRROR_PING:
+                    sock.sendall(b"PING\n")
+                    last_ping = now
+                try:
+                    data = sock.recv(65536)
+                except socket.timeout:
+                    continue
+                if not data:
+                    break
+                last_rx = time.monotonic()
+                if not linked:
+                    # Only once it answers: a frozen relay's listen backlog still takes the connect
+                    linked = True
+                    set_standby(True)
+                buf += data
+                while (nl := buf.find(b"\n")) >= 0:
+                    frame = bytes(buf[:nl + 1])
+                    del buf[:nl + 1]
+                    mirror_frame(frame)
+        except OSError:
+            pass
+        finally:
+            sock.close()
+        set_standby(False)
+
+
+# ===================== LAN MULTICAST =====================
+# --multicast GROUP:PORT: every MOVE_ is sent once to the group instead of once per follower.
+# Clients with the mcast cap get MCAST_<group>_<port>_<tag> after WELCOME, join, and answer
+# MCAST_OK after their first datagram; from then on they get MOVE_ only by multicast. Everything
+# else (roles, reliable events, snapshots) stays on TCP. Datagrams are <tag>_<seq>_<frame>; the
+# tag is per relay process (several relays may share a group), seq lets clients count gaps and
+# drop reordered frames. MCAST_HB goes out when idle so a client can tell a dead path from a
+# quiet leader; a client that loses the path sends MCAST_OFF and is back on TCP.
+
+MCAST_HB_EVERY = 0.5
+
+mcast_sock: socket.socket | None = None
+mcast_group: tuple[str, int] = ("", 0)
+mcast_tag = ""
+mcast_seq = 0
+mcast_sent = 0
+mcast_last = 0.0
+mcast_lock = threading.Lock()
+
+
+def mcast_open(spec: str, iface: str):
+    global mcast_sock, mcast_group, mcast_tag
+    host, _, port = spec.rpartition(":")
+    mcast_group = (host, int(port))
+    mcast_tag = os.urandom(4).hex()
+    s = socket.socket(socket.AF_INET, socket.SOCK_DGRAM, socket.IPPROTO_UDP)
+    s.setsockopt(socket.IPPROTO_IP, socket.IP_MULTICAST_TTL, 1)   # LAN only
+    s.setsockopt(socket.IPPROTO_IP, socket.IP_MULTICAST_LOOP, 1)  # followers on this host too
+    if iface:
+        s.setsockopt(socket.IPPROTO_IP, socket.IP_MULTICAST_IF, socket.inet_aton(iface))
+    s.setblocking(False)
+    mcast_sock = s
+    threading.Thread(target=mcast_heartbeat, daemon=True).start()
+    log(f"[MCAST] MOVE_ to {host}:{port}" + (f" via {iface}" if iface else "") + f" (tag {mcast_tag})")
+
+
+def mcast_send(frame: bytes):
+    global mcast_seq, mcast_sent, mcast_last
+    with mcast_lock:
+        mcast_seq += 1
+        try:
+            mcast_sock.sendto(f"{mcast_tag}_{mcast_seq}_".encode() + frame, mcast_group)
+            mcast_sent += 1
+        except OSError:
+            pass  # full buffer or no route: a gap the clients will see
+        mcast_last = time.monotonic()
+
+
+def mcast_heartbeat():
+    while True:
+        time.sleep(MCAST_HB_EVERY / 2)
+        if time.monotonic() - mcast_last >= MCAST_HB_EVERY:
+            mcast_send(b"MCAST_HB\n")
+
+
+# ===================== SHARDING =====================
+# --shards N runs N independent sync groups, one relay process each (own leader, sessions and
+# GIL) on port, port+1, ...; clients pick their group with -Dinputsync.port. The console here
+# forwards every command to all groups, or to one with "g<i> <command>".
+
+def run_shards(args):
+    procs = []
+    for i in range(args.shards):
+        cmd = [sys.executable, os.path.abspath(__file__), "--host", args.host, "--port", str(args.port + i),
+               "--mode", args.mode, "--tag", f"g{i}"]
+        if args.multicast:
+            # One port per group, so followers only receive their own group's datagrams
+            g, _, mp = args.multicast.rpartition(":")
+            cmd += ["--multicast", f"{g}:{int(mp) + i}", "--multicast-if", args.multicast_if]
+        procs.append(subprocess.Popen(cmd, stdin=subprocess.PIPE, text=True, bufsize=1))
+    log(f"[InputSync Relay] {args.shards} groups on ports {args.port}-{args.port + args.shards - 1} ({args.mode})")
+
+    try:
+        while True:
+            try:
+                line = input("> " if sys.stdin.isatty() else "").strip()
+            except EOFError:
+                line = "quit"
+            targets = procs
+            head, _, rest = line.partition(" ")
+            if len(head) > 1 and head[0] == "g" and head[1:].isdigit():
+                i = int(head[1:])
+                if i >= len(procs):
+                    log("No such group.")
+                    continue
+                targets = [procs[i]]
+                line = rest.strip()
+            for p in targets:
+                try:
+                    p.stdin.write(line + "\n")
+                    p.stdin.flush()
+                except (BrokenPipeError, OSError):
+                    pass
+            if line.lower() in ("q", "quit", "exit") and targets is procs:
+                return
+    finally:
+        for p in procs:
+            try:
+                p.stdin.close()
+                p.wait(timeout=2)
+            except Exception:
+                p.kill()
+
+
 def console_loop():
-    log("Console: pause | resume | toggle | clients | source | quit")
+    log("Console: pause | resume | toggle | clients | sessions | stats | state | dump | source | quit")
     while True:
-        cmd = input("> ").strip().lower()
+        try:
+            cmd = input("> " if sys.stdin.isatty() else "").strip().lower()
+        except EOFError:
+            return
         if cmd in ("q", "quit", "exit"):
             return
         if cmd == "pause":
@@ -239,11 +1233,15 @@ def console_loop():
         if cmd == "toggle":
             broadcast("TOGGLE_SYNC")
             continue
+        if cmd == "dump":
+            # Every client writes inputsync-metrics-<session>.txt in its game directory
+            broadcast("DUMP_METRICS")
+            continue
         if cmd == "source":
             with lock:
                 if source is not None and source in clients:
                     i = clients.index(source)
-                    log(f"source = {i} {source.addr} (focused={source.focused})")
+                    log(f"source = {i} {source.addr} (focused={source.focused}, epoch {leader_epoch})")
                 else:
                     log("source = none")
             continue
@@ -252,19 +1250,79 @@ def console_loop():
                 for i, cl in enumerate(clients):
                     mark = " (SOURCE)" if (source is cl) else ""
                     foc = " (FOCUSED)" if cl.focused else ""
-                    log(f"{i}: {cl.addr}{mark}{foc}")
+                    sid = f" session={cl.session.sid}" if cl.session is not None else ""
+                    log(f"{i}: {cl.addr}{mark}{foc}{sid} v{cl.proto} [{','.join(sorted(cl.caps))}]")
+            continue
+        if cmd == "stats":
+            with lock:
+                for i, cl in enumerate(clients):
+                    z = "zlib" if (cl.zin is not None or cl.zout is not None) else "plain"
+                    log(f"{i}: {cl.addr} {z} out {cl.raw_out}->{cl.wire_out}B ({ratio(cl.raw_out, cl.wire_out)})"
+                        f" in {cl.raw_in}<-{cl.wire_in}B ({ratio(cl.raw_in, cl.wire_in)})"
+                        f" cpu {cl.zcpu_ns / 1e6:.1f}ms")
+                    segs = tcp_segs_out(cl.sock)
+                    log(f"   {cl.frames_out} lines in {cl.writes} writes"
+                        f" ({cl.frames_out / cl.writes if cl.writes else 0:.1f}/write),"
+                        f" {cl.syscalls} syscalls, {segs if segs is not None else '-'} packets,"
+                        f" queued {len(cl.outq)} ({cl.qbytes}B), {cl.shed} MOVE_ shed")
+                if mcast_sock is not None:
+                    log(f"mcast: {mcast_sent} datagrams, {sum(1 for cl in clients if cl.mcast)} clients on multicast")
+            continue
+        if cmd == "state":
+            with lock:
+                log(f"state: {state.describe()}")
+            continue
+        if cmd == "sessions":
+            with lock:
+                expire_sessions_locked()
+                now = time.time()
+                for sid, sess in sessions.items():
+                    status = "attached" if sess.client is not None else f"detached {now - sess.detached_at:.0f}s"
+                    log(f"{sid}: {status} seq={sess.next_seq - 1} log={len(sess.log)}")
             continue
         log("Unknown command.")
 
 
 def main():
+    global HOST, PORT, MODE, LOG_TAG, mirror_of, standby
+    ap = argparse.ArgumentParser(description="InputSync relay")
+    ap.add_argument("--host", default=HOST)
+    ap.add_argument("--port", type=int, default=PORT)
+    ap.add_argument("--mode", choices=("threads", "loop"), default=MODE,
+                    help="threads: reader+writer thread per client; loop: one event loop for all sockets")
+    ap.add_argument("--shards", type=int, default=1, help="run N sync groups as processes on port..port+N-1")
+    ap.add_argument("--mirror-of", metavar="HOST:PORT",
+                    help="hot standby: mirror this relay and take over its clients when it is gone")
+    ap.add_argument("--multicast", metavar="GROUP:PORT",
+                    help="also send MOVE_ to this LAN multicast group, e.g. 239.255.77.77:25599")
+    ap.add_argument("--multicast-if", default="", metavar="ADDR",
+                    help="interface address to send multicast on (127.0.0.1 for single-host tests)")
+    ap.add_argument("--tag", default="", help=argparse.SUPPRESS)
+    args = ap.parse_args()
+
+    if args.shards > 1:
+        run_shards(args)
+        return
+
+    HOST, PORT, MODE, LOG_TAG = args.host, args.port, args.mode, args.tag
+
     s = socket.socket(socket.AF_INET, socket.SOCK_STREAM)
     s.setsockopt(socket.SOL_SOCKET, socket.SO_REUSEADDR, 1)
     s.bind((HOST, PORT))
     s.listen()
-    log(f"[InputSync Relay] Listening on {HOST}:{PORT}")
+    log(f"[InputSync Relay] Listening on {HOST}:{PORT} ({MODE})")
+
+    if args.multicast:
+        mcast_open(args.multicast, args.multicast_if)
+
+    if args.mirror_of:
+        h, _, p = args.mirror_of.rpartition(":")
+        mirror_of = (h or "127.0.0.1", int(p))
+        standby = True  # until the link says otherwise; no clients before we know
+        threading.Thread(target=mirror_loop, daemon=True).start()
 
-    threading.Thread(target=accept_loop, args=(s,), daemon=True).start()
+    target = event_loop if MODE == "loop" else accept_loop
+    threading.Thread(target=target, args=(s,), daemon=True).start()
     console_loop()
 
 
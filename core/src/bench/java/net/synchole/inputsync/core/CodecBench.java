@@ -0,0 +1,71 @@
+package net.synchole.inputsync.core;
+
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+
+/**
+ * MOVE_ codec cost without a game or a socket: encode into a CaptureRing, drain, parse.
+ *
+ *   gradle :core:benchCodec        (or java -cp ... net.synchole.inputsync.core.CodecBench [ops])
+ *
+ * Encode must stay allocation-free (the leader runs it on the render thread); drain and parse
+ * allocate one String / one MoveState per line by design.
+ */
+public final class CodecBench {
+
+    private static final com.sun.management.ThreadMXBean MX =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private static long sink = 0L;
+
+    private CodecBench() {}
+
+    public static void main(String[] args) {
+        int ops = args.length > 0 ? Integer.parseInt(args[0]) : 2_000_000;
+        CaptureRing ring = new CaptureRing(64 * 1024);
+
+        for (int round = 0; round < 3; round++) {
+            boolean report = round == 2; // the first rounds are JIT warm-up
+            run(ring, ops, report);
+        }
+        System.out.println("[InputSync] bench checksum " + sink);
+    }
+
+    private static void run(CaptureRing ring, int ops, boolean report) {
+        String[] last = new String[1];
+
+        // Encode only: the leader's per-tick cost
+        long a0 = MX.getCurrentThreadAllocatedBytes();
+        long t0 = System.nanoTime();
+        for (int i = 0; i < ops; i++) {
+            encode(ring, i);
+            if ((i & 255) == 255) ring.clear();
+        }
+        long encNs = System.nanoTime() - t0;
+        long encBytes = MX.getCurrentThreadAllocatedBytes() - a0;
+        ring.clear();
+
+        // Encode + drain + parse: one line through the whole codec
+        a0 = MX.getCurrentThreadAllocatedBytes();
+        t0 = System.nanoTime();
+        for (int i = 0; i < ops; i++) {
+            encode(ring, i);
+            ring.drain(line -> last[0] = line);
+            MoveState st = MoveState.parse(last[0]);
+            if (st != null) sink += st.hotbar;
+        }
+        long rtNs = System.nanoTime() - t0;
+        long rtBytes = MX.getCurrentThreadAllocatedBytes() - a0;
+
+        if (!report) return;
+        System.out.println(String.format(Locale.ROOT, "[InputSync] bench encode        %8.1f ns/op %8.1f B/op",
+                (double) encNs / ops, (double) encBytes / ops));
+        System.out.println(String.format(Locale.ROOT, "[InputSync] bench encode+parse  %8.1f ns/op %8.1f B/op  (%d bytes/line)",
+                (double) rtNs / ops, (double) rtBytes / ops, last[0].length() + 1));
+    }
+
+    private static void encode(CaptureRing ring, int i) {
+        MoveState.encode(ring, (i % 3600) * 0.1f - 180.0f, (i % 180) - 90.0f, 1.0f, (i & 1) == 0 ? 0.0f : -1.0f,
+                (i & 8) != 0, false, true, (i & 16) != 0, false, i % 9, true);
+    }
+}
@@ -0,0 +1,144 @@
+package net.synchole.inputsync.core;
+
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * End-to-end over loopback without a game: one leader SyncClient, N follower SyncClients and a
+ * {@link LoopbackRelay}.
+ *
+ *   gradle :core:benchLoopback -Pfollowers=8   (or java -cp ... net.synchole.inputsync.core.LoopbackBench [followers] [moves] [events])
+ *
+ * MOVE_: leader capture to follower onMove latency, paced at 1 kHz; the yaw carries the index.
+ * Latest-wins coalescing may skip MOVEs under load, so delivered counts are reported too.
+ * HBAR_: reliable event throughput, pushed as fast as the capture ring takes them.
+ */
+public final class LoopbackBench {
+
+    private LoopbackBench() {}
+
+    public static void main(String[] args) throws Exception {
+        int followers = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+        int moves = args.length > 1 ? Integer.parseInt(args[1]) : 5_000;
+        int events = args.length > 2 ? Integer.parseInt(args[2]) : 100_000;
+
+        LoopbackRelay relay = new LoopbackRelay();
+        relay.start();
+
+        long[] sentAt = new long[moves];
+        long[] latency = new long[moves * followers];
+        AtomicLong latencies = new AtomicLong();
+        AtomicLong received = new AtomicLong();
+        CountDownLatch ready = new CountDownLatch(followers + 1);
+        CountDownLatch done = new CountDownLatch(followers);
+
+        // The relay makes the first HELLO the leader
+        SyncClient leader = client(relay.port(), new Counter(ready, null, sentAt, latency, latencies, received, 0));
+        leader.start();
+        while (!leader.isLeader()) Thread.sleep(5);
+
+        for (int i = 0; i < followers; i++) {
+            client(relay.port(), new Counter(ready, done, sentAt, latency, latencies, received, events)).start();
+        }
+        if (!ready.await(10, TimeUnit.SECONDS)) throw new IllegalStateException("clients did not connect");
+
+        CaptureRing out = leader.out();
+
+        // MOVE_ latency, ~1 kHz
+        for (int i = 0; i < moves; i++) {
+            sentAt[i] = System.nanoTime();
+            if (MoveState.encode(out, i, 0.0f, 1.0f, 0.0f, false, false, false, false, false, 0, false)) {
+                leader.published(MessageType.MOVE);
+            }
+            long until = sentAt[i] + 1_000_000L;
+            while (System.nanoTime() < until) Thread.onSpinWait();
+        }
+        Thread.sleep(200);
+        int n = (int) Math.min(latencies.get(), latency.length);
+        long[] lat = Arrays.copyOf(latency, n);
+        Arrays.sort(lat);
+
+        // HBAR_ throughput (ring-full retries show up in the leader's capture ring drop count)
+        long t0 = System.nanoTime();
+        for (int i = 0; i < events; i++) {
+            while (!out.begin().put("HBAR_").putInt(i % 9).commit()) {
+                leader.requestFlush();
+                Thread.onSpinWait();
+            }
+            leader.published(MessageType.HBAR);
+        }
+        boolean all = done.await(60, TimeUnit.SECONDS);
+        long took = System.nanoTime() - t0;
+
+        System.out.println(String.format(Locale.ROOT,
+                "[InputSync] bench MOVE  followers %d  delivered %d/%d  p50 %.1f us  p99 %.1f us  max %.1f us",
+                followers, n, (long) moves * followers, us(lat, 0.50), us(lat, 0.99), us(lat, 1.0)));
+        System.out.println(String.format(Locale.ROOT,
+                "[InputSync] bench HBAR  %d events x %d followers in %.1f ms  %.0f events/s%s",
+                events, followers, took / 1e6, events / (took / 1e9), all ? "" : "  (INCOMPLETE: " + received.get() + ")"));
+        for (String line : leader.describe()) System.out.println("[InputSync] leader " + line);
+        System.exit(all ? 0 : 1);
+    }
+
+    private static double us(long[] sorted, double q) {
+        if (sorted.length == 0) return 0.0;
+        return sorted[Math.min(sorted.length - 1, (int) (q * sorted.length))] / 1e3;
+    }
+
+    private static SyncClient client(int port, GameAdapter adapter) {
+        SyncClient.Options o = new SyncClient.Options();
+        o.relays = List.of(InetSocketAddress.createUnresolved("127.0.0.1", port));
+        o.compress = "off";
+        o.multicast = false;
+        return new SyncClient(o, adapter);
+    }
+
+    /** Headless game side: counts what arrives. */
+    private static final class Counter implements GameAdapter {
+        private final CountDownLatch ready, done;
+        private final long[] sentAt, latency;
+        private final AtomicLong latencies, received;
+        private final int events;
+        private boolean roled = false;
+        private int hbars = 0;
+
+        Counter(CountDownLatch ready, CountDownLatch done, long[] sentAt, long[] latency,
+                AtomicLong latencies, AtomicLong received, int events) {
+            this.ready = ready;
+            this.done = done;
+            this.sentAt = sentAt;
+            this.latency = latency;
+            this.latencies = latencies;
+            this.received = received;
+            this.events = events;
+        }
+
+        @Override
+        public void onRole(boolean leader, boolean changed) {
+            if (!roled) ready.countDown();
+            roled = true;
+        }
+
+        @Override
+        public void onMove(MoveState move) {
+            long now = System.nanoTime();
+            int i = (int) move.yaw;
+            if (i < 0 || i >= sentAt.length) return;
+            long slot = latencies.getAndIncrement();
+            if (slot < latency.length) latency[(int) slot] = now - sentAt[i];
+        }
+
+        @Override
+        public boolean onEvent(MessageType type, String msg) {
+            if (type != MessageType.HBAR) return false;
+            received.incrementAndGet();
+            if (++hbars == events) done.countDown();
+            return true;
+        }
+    }
+}
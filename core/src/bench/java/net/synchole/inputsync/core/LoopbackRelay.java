@@ -0,0 +1,83 @@
+package net.synchole.inputsync.core;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Just enough relay for headless runs (LoopbackBench, the core tests): HELLO gets WELCOME (no
+ * caps) and a role, the first HELLO leads, and leader lines go to every follower verbatim.
+ */
+final class LoopbackRelay extends Thread {
+    private final ServerSocket server;
+    private final List<OutputStream> followers = new CopyOnWriteArrayList<>();
+    private volatile boolean hasLeader = false;
+
+    LoopbackRelay() throws IOException {
+        super("Bench-Relay");
+        setDaemon(true);
+        server = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+    }
+
+    int port() {
+        return server.getLocalPort();
+    }
+
+    void close() {
+        try { server.close(); } catch (IOException ignored) {}
+    }
+
+    @Override
+    public void run() {
+        try {
+            while (true) {
+                Socket s = server.accept();
+                s.setTcpNoDelay(true);
+                Thread t = new Thread(() -> serve(s), "Bench-Relay-Client");
+                t.setDaemon(true);
+                t.start();
+            }
+        } catch (IOException ignored) {}
+    }
+
+    private void serve(Socket s) {
+        try (s) {
+            BufferedReader in = new BufferedReader(new InputStreamReader(s.getInputStream(), StandardCharsets.UTF_8));
+            OutputStream out = s.getOutputStream();
+            boolean leader = false;
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (line.startsWith("HELLO_")) {
+                    synchronized (this) {
+                        leader = !hasLeader;
+                        hasLeader = true;
+                    }
+                    write(out, "WELCOME_" + Protocol.VERSION + "_\n" + (leader ? "ROLE_LEADER" : "ROLE_FOLLOWER") + "\n");
+                    if (!leader) followers.add(out);
+                    continue;
+                }
+                if (!leader) continue;
+                byte[] b = (line + "\n").getBytes(StandardCharsets.UTF_8);
+                for (OutputStream f : followers) write(f, b);
+            }
+        } catch (IOException ignored) {}
+    }
+
+    private static void write(OutputStream out, String text) throws IOException {
+        write(out, text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void write(OutputStream out, byte[] b) throws IOException {
+        synchronized (out) {
+            out.write(b);
+            out.flush();
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package net.synchole.inputsync.core;
+
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+
+/**
+ * Allocation regression check for the leader capture path (-Dinputsync.allocCheck=true).
+ *
+ * Every capture callback is bracketed with begin()/end(); the bytes the render thread allocated
+ * in between are summed after a warm-up. Steady-state capture must allocate nothing, so any
+ * non-zero total is logged as a regression together with the worst callback. CaptureAllocationTest
+ * runs the same check headless and fails the build (gradle :core:test).
+ */
+public final class AllocCheck {
+
+    public static final boolean ENABLED = Boolean.getBoolean("inputsync.allocCheck");
+
+    private static final long WARMUP_EVENTS = 2_000L;
+    private static final long REPORT_EVERY = 10_000L;
+
+    private static final com.sun.management.ThreadMXBean MX = ENABLED ? init() : null;
+
+    /** Render thread only */
+    private static long events = 0L;
+    private static long measured = 0L;
+    private static long bytes = 0L;
+    private static long worstBytes = 0L;
+    private static String worst = null;
+
+    private AllocCheck() {}
+
+    private static com.sun.management.ThreadMXBean init() {
+        try {
+            com.sun.management.ThreadMXBean mx = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+            mx.setThreadAllocatedMemoryEnabled(true);
+            System.out.println("[InputSync] allocCheck on (warm-up " + WARMUP_EVENTS + " events)");
+            return mx;
+        } catch (Throwable t) {
+            System.out.println("[InputSync] allocCheck unavailable: " + t);
+            return null;
+        }
+    }
+
+    public static long begin() {
+        return MX != null ? MX.getCurrentThreadAllocatedBytes() : 0L;
+    }
+
+    /** @param what a constant label, so the check itself does not allocate */
+    public static void end(long start, String what) {
+        if (MX == null) return;
+        long d = MX.getCurrentThreadAllocatedBytes() - start;
+        if (++events <= WARMUP_EVENTS) return;
+
+        measured++;
+        bytes += d;
+        if (d > worstBytes) {
+            worstBytes = d;
+            worst = what;
+        }
+        if (measured % REPORT_EVERY == 0) {
+            if (bytes == 0L) System.out.println("[InputSync] allocCheck OK: " + describe());
+            else System.out.println("[InputSync] allocCheck REGRESSION: " + describe());
+        }
+    }
+
+    public static String describe() {
+        if (MX == null) return "off";
+        if (measured == 0L) return "warming up (" + events + "/" + WARMUP_EVENTS + ")";
+        String s = String.format(Locale.ROOT, "%d bytes over %d capture events", bytes, measured);
+        return worst == null ? s : s + ", worst " + worst + " " + worstBytes + "B";
+    }
+}
@@ -0,0 +1,168 @@
+package net.synchole.inputsync.core;
+
+import java.nio.charset.StandardCharsets;
+import java.util.function.Consumer;
+
+/**
+ * Leader outbound events, encoded in place on the render thread.
+ *
+ * A single-producer/single-consumer byte ring: the render thread (GLFW callbacks and the tick)
+ * writes whole wire lines straight into a preallocated array, digits included, and publishes
+ * them by moving {@code tail}; the IO thread turns them into lines for the scheduler. Nothing on
+ * the producer side allocates. A line that does not fit is dropped whole and counted.
+ */
+public final class CaptureRing {
+
+    private static final byte[] DIGITS = "0123456789".getBytes(StandardCharsets.US_ASCII);
+    private static final long[] POW10 = {1L, 10L, 100L, 1_000L, 10_000L, 100_000L, 1_000_000L};
+
+    private final byte[] buf;
+    private final int mask;
+
+    /** Consumer position (IO thread writes) */
+    private volatile long head = 0L;
+    /** Published producer position (render thread writes) */
+    private volatile long tail = 0L;
+
+    /** Render thread only: line being written */
+    private long w = 0L;
+    private boolean overflow = false;
+    private long dropped = 0L;
+    private long committed = 0L;
+
+    /** IO thread only: one line, copied out of the ring */
+    private byte[] scratch = new byte[256];
+
+    /** @param capacity power of two */
+    public CaptureRing(int capacity) {
+        if (Integer.bitCount(capacity) != 1) throw new IllegalArgumentException("capacity must be a power of two");
+        this.buf = new byte[capacity];
+        this.mask = capacity - 1;
+    }
+
+    /* ===================== PRODUCER (render thread) ===================== */
+
+    public CaptureRing begin() {
+        w = tail;
+        overflow = false;
+        return this;
+    }
+
+    public CaptureRing put(byte b) {
+        if (w - head >= buf.length) {
+            overflow = true;
+            return this;
+        }
+        buf[(int) (w++ & mask)] = b;
+        return this;
+    }
+
+    public CaptureRing put(char c) {
+        return put((byte) c);
+    }
+
+    public CaptureRing put(byte[] b, int off, int len) {
+        for (int i = 0; i < len; i++) put(b[off + i]);
+        return this;
+    }
+
+    /** UTF-8 without a temporary byte[]. */
+    public CaptureRing put(String s) {
+        for (int i = 0, n = s.length(); i < n; i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                put((byte) c);
+            } else if (c < 0x800) {
+                put((byte) (0xC0 | (c >> 6))).put((byte) (0x80 | (c & 0x3F)));
+            } else if (Character.isHighSurrogate(c) && i + 1 < n && Character.isLowSurrogate(s.charAt(i + 1))) {
+                int cp = Character.toCodePoint(c, s.charAt(++i));
+                put((byte) (0xF0 | (cp >> 18))).put((byte) (0x80 | ((cp >> 12) & 0x3F)))
+                        .put((byte) (0x80 | ((cp >> 6) & 0x3F))).put((byte) (0x80 | (cp & 0x3F)));
+            } else {
+                put((byte) (0xE0 | (c >> 12))).put((byte) (0x80 | ((c >> 6) & 0x3F))).put((byte) (0x80 | (c & 0x3F)));
+            }
+        }
+        return this;
+    }
+
+    public CaptureRing putInt(long v) {
+        if (v < 0) {
+            put('-');
+            if (v == Long.MIN_VALUE) return put("9223372036854775808");
+            v = -v;
+        }
+        long div = 1L;
+        while (div <= v / 10) div *= 10;
+        for (; div > 0; div /= 10) put(DIGITS[(int) ((v / div) % 10)]);
+        return this;
+    }
+
+    /** Fixed-point like {@code %.Nf} (half-up), decimals 0..6. */
+    public CaptureRing putFixed(double v, int decimals) {
+        if (Double.isNaN(v) || Double.isInfinite(v)) v = 0.0;
+        long scale = POW10[decimals];
+        long units = Math.round(Math.abs(v) * scale);
+        if (v < 0 && units != 0) put('-');
+        putInt(units / scale);
+        if (decimals > 0) {
+            put('.');
+            long frac = units % scale;
+            for (long d = scale / 10; d > 0; d /= 10) put(DIGITS[(int) ((frac / d) % 10)]);
+        }
+        return this;
+    }
+
+    /** Terminates and publishes the line; false if it did not fit (nothing is published). */
+    public boolean commit() {
+        put((byte) '\n');
+        if (overflow) {
+            dropped++;
+            return false;
+        }
+        tail = w;
+        committed++;
+        return true;
+    }
+
+    public long dropped() {
+        return dropped;
+    }
+
+    /** Producer side: bytes and lines published so far. */
+    public long written() {
+        return tail;
+    }
+
+    public long lines() {
+        return committed;
+    }
+
+    /* ===================== CONSUMER (IO thread) ========================= */
+
+    /** Hands every published line (without the newline) to {@code sink}. */
+    void drain(Consumer<String> sink) {
+        long h = head;
+        long t = tail;
+        int len = 0;
+        while (h < t) {
+            byte b = buf[(int) (h++ & mask)];
+            if (b == '\n') {
+                sink.accept(new String(scratch, 0, len, StandardCharsets.UTF_8));
+                len = 0;
+                head = h;
+                continue;
+            }
+            if (len == scratch.length) {
+                byte[] grown = new byte[scratch.length * 2];
+                System.arraycopy(scratch, 0, grown, 0, len);
+                scratch = grown;
+            }
+            scratch[len++] = b;
+        }
+    }
+
+    /** Discards everything published so far (new connection: stale events are not sent). */
+    void clear() {
+        head = tail;
+    }
+}
@@ -0,0 +1,143 @@
+package net.synchole.inputsync.core;
+
+import java.util.function.IntConsumer;
+
+/**
+ * Attack/use clicks as discrete edges from the mouse callback, instead of edges derived from the
+ * held bits MOVE_ samples every send (which misses clicks shorter than a send and undercounts
+ * fast clicking).
+ *
+ *   CLK_<leaderMs>_<edge><dtMs>,<edge><dtMs>,...
+ *
+ * edge: A/a = attack press/release, U/u = use press/release; dtMs = time since the previous edge
+ * in the batch (the first is 0, at leaderMs). One batch per leader tick, only when there were
+ * edges, so nothing extra is sent while not clicking. Live only (never replayed after a
+ * resume: a late click lands somewhere else), clk cap only.
+ *
+ * Followers replay the edges in order, spaced by their original gaps, from the follower tick.
+ * The held bits in MOVE_ still drive continuous state (block breaking).
+ *
+ * Render thread only.
+ */
+public final class ClickStream {
+
+    public static final char ATTACK_PRESS = 'A', ATTACK_RELEASE = 'a', USE_PRESS = 'U', USE_RELEASE = 'u';
+
+    /** GLFW's values (mouse button, action), so callbacks pass theirs straight through */
+    public static final int BUTTON_LEFT = 0, BUTTON_RIGHT = 1;
+    public static final int RELEASE = 0, PRESS = 1;
+
+    private static final int MAX = 64;
+    /** Gaps longer than this are replayed as this (a stalled leader should not delay followers) */
+    private static final long MAX_GAP_MS = 250L;
+
+    /** Leader: edges since the last flush */
+    private static final char[] edges = new char[MAX];
+    private static final long[] edgeNanos = new long[MAX];
+    private static int count = 0;
+    private static long firstMillis = 0L;
+    /** Buttons whose press was recorded (a release is only sent for those) */
+    private static int down = 0;
+
+    /** Follower: edges waiting for their time */
+    private static final char[] pending = new char[MAX * 4];
+    private static final long[] pendingDue = new long[MAX * 4];
+    private static int pendingHead = 0, pendingCount = 0;
+
+    private ClickStream() {}
+
+    /* ===================== LEADER ===================== */
+
+    /** Mouse callback; only presses made in-world (no screen) are tracked. */
+    public static void record(int button, int action, boolean inWorld) {
+        int bit;
+        char press, release;
+        if (button == BUTTON_LEFT) {
+            bit = 1;
+            press = ATTACK_PRESS;
+            release = ATTACK_RELEASE;
+        } else if (button == BUTTON_RIGHT) {
+            bit = 2;
+            press = USE_PRESS;
+            release = USE_RELEASE;
+        } else {
+            return;
+        }
+
+        if (action == PRESS) {
+            if (!inWorld) return;
+            down |= bit;
+            add(press);
+        } else if (action == RELEASE && (down & bit) != 0) {
+            down &= ~bit;
+            add(release);
+        }
+    }
+
+    private static void add(char edge) {
+        if (count == MAX) return; // flushed every tick; 64 edges in 50ms is not a human
+        if (count == 0) firstMillis = System.currentTimeMillis();
+        edges[count] = edge;
+        edgeNanos[count] = System.nanoTime();
+        count++;
+    }
+
+    /** Leader tick: appends one CLK_ line if there were edges. Allocation-free. */
+    public static boolean captureInto(CaptureRing out) {
+        if (count == 0) return false;
+        out.begin().put("CLK_").putInt(firstMillis).put('_');
+        for (int i = 0; i < count; i++) {
+            if (i > 0) out.put(',');
+            long gap = i == 0 ? 0L : (edgeNanos[i] - edgeNanos[i - 1]) / 1_000_000L;
+            out.put(edges[i]).putInt(gap);
+        }
+        if (!out.commit()) return false; // ring full: keep the edges for the next tick
+        count = 0;
+        return true;
+    }
+
+    /** Lost or gained the role: neither side's half-recorded clicks carry over. */
+    public static void reset() {
+        count = 0;
+        down = 0;
+        pendingHead = pendingCount = 0;
+    }
+
+    /* ===================== FOLLOWER ===================== */
+
+    /** CLK_ from the leader: queue each edge at now + its offset in the batch. */
+    public static void enqueue(String msg) {
+        int a = msg.indexOf('_');
+        int b = a < 0 ? -1 : msg.indexOf('_', a + 1);
+        if (b < 0) return;
+        long due = System.nanoTime();
+        for (String e : msg.substring(b + 1).split(",")) {
+            if (e.isEmpty()) continue;
+            long gap;
+            try {
+                gap = Long.parseLong(e.substring(1));
+            } catch (NumberFormatException ex) {
+                continue;
+            }
+            due += Math.min(Math.max(gap, 0L), MAX_GAP_MS) * 1_000_000L;
+            if (pendingCount == pending.length) {
+                SyncLog.info("clk.overflow", "click replay queue full, edge dropped");
+                continue;
+            }
+            int i = (pendingHead + pendingCount++) % pending.length;
+            pending[i] = e.charAt(0);
+            pendingDue[i] = due;
+        }
+    }
+
+    /** Follower tick: hands every edge that is due, in order, to {@code replay}. */
+    public static void replay(IntConsumer replay) {
+        long now = System.nanoTime();
+        while (pendingCount > 0 && pendingDue[pendingHead] - now <= 0L) {
+            char e = pending[pendingHead];
+            pendingHead = (pendingHead + 1) % pending.length;
+            pendingCount--;
+            replay.accept(e);
+        }
+    }
+}
@@ -0,0 +1,351 @@
+package net.synchole.inputsync.core;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * All client networking on one thread: a single NIO selector handles connect, read, write and
+ * reconnect backoff. A reconnect storm costs no thread churn, and an idle client costs one
+ * parked thread.
+ *
+ * Failover: relays are tried in list order. A relay that refuses, times out, stays silent for
+ * HANDSHAKE_MS after the connect or drops us before saying anything is skipped immediately for
+ * the next one; backoff only starts after a whole round failed. With a relay that answers PING,
+ * an idle connection is probed every PING_MS and dropped after LIVENESS_MS of silence, so a dead
+ * relay is noticed well under a second; it is skipped for SILENT_SKIP_MS, since a hung relay's
+ * listen backlog still takes a connect. A relay that keeps dropping us shortly after the
+ * handshake (under STABLE_MS) is retried with the same backoff instead of in a tight loop.
+ *
+ * There is no warm connection to the secondary: a standby relay refuses clients while its own
+ * link to the active relay is up, and that link is the health probe (see HOT STANDBY in sync.py).
+ * The standby already holds the group state, so failing over is one connect and a HELLO.
+ */
+final class ClientIO implements Runnable {
+
+    interface Listener {
+        /** IO thread, right after the TCP connect completes. */
+        void onConnected(Connection c);
+
+        /** IO thread, one decoded line. */
+        void onLine(String line);
+
+        /** IO thread, right before queued lines are written: last chance to queue more. */
+        void onWritable(Connection c);
+
+        /** IO thread, after the connection is closed for any reason. */
+        void onClosed(Connection c);
+    }
+
+    private static final long CONNECT_TIMEOUT_MS = 1500L;
+    /** Every relay says something right after the connect (WELCOME, or ROLE_ from an old one) */
+    private static final long HANDSHAKE_MS = 1000L;
+    /** A connection that lived shorter than this counts as a flap */
+    private static final long STABLE_MS = 5000L;
+    /** A relay that went silent is skipped this long (it would still take a connect, then say nothing) */
+    private static final long SILENT_SKIP_MS = 2000L;
+
+    /** Liveness probe (relays with the ping cap) */
+    private static final long PING_MS = 250L;
+    private static final long LIVENESS_MS = 800L;
+
+    /** Reconnect backoff (first retry is immediate, then jittered exponential) */
+    private static final long RECONNECT_BASE_MS = 50L;
+    private static final long RECONNECT_MAX_MS = 1000L;
+
+    private final List<InetSocketAddress> endpoints;
+    private final Listener listener;
+    private final Selector selector;
+    private final AtomicBoolean writeWakeup = new AtomicBoolean(false);
+    private final ByteBuffer readBuf = ByteBuffer.allocate(16 * 1024);
+    /** Decoded lines go to the listener; counted per read for the JFR Read event */
+    private final Consumer<String> lineSink;
+
+    /** IO thread only */
+    private Connection conn;
+    private int endpoint = 0;
+    private int attempt = 0;
+    private long nextAttemptAt = 0L;
+    /** Consecutive drops after the handshake that came within STABLE_MS */
+    private int flaps = 0;
+    /** Per endpoint: went silent on us, don't connect to it before this */
+    private final long[] skipUntil;
+    /** Outbound rate cap hit: retry the flush at this time (0 = not throttled) */
+    private long throttledUntil = 0L;
+    private int readLines = 0;
+
+    /** @param endpoints unresolved relay addresses, primary first */
+    ClientIO(List<InetSocketAddress> endpoints, Listener listener) throws IOException {
+        if (endpoints.isEmpty()) throw new IllegalArgumentException("no relay endpoints");
+        this.endpoints = List.copyOf(endpoints);
+        this.skipUntil = new long[this.endpoints.size()];
+        this.listener = listener;
+        this.lineSink = line -> {
+            readLines++;
+            listener.onLine(line);
+        };
+        this.selector = Selector.open();
+    }
+
+    void start() {
+        Thread t = new Thread(this, "InputSync-IO");
+        t.setDaemon(true);
+        t.start();
+    }
+
+    /** Any thread: a send queued data, make the loop flush it. */
+    void wakeupForWrite() {
+        if (writeWakeup.compareAndSet(false, true)) selector.wakeup();
+    }
+
+    @Override
+    public void run() {
+        while (true) {
+            try {
+                long now = System.currentTimeMillis();
+                if (conn == null && now >= nextAttemptAt) connect(now);
+
+                long timeout;
+                if (conn == null) timeout = Math.max(1L, nextAttemptAt - now);
+                else if (conn.state == Connection.State.CONNECTING) timeout = Math.max(1L, conn.connectDeadline - now);
+                else if (!conn.heard) timeout = Math.max(1L, conn.establishedAt + HANDSHAKE_MS - now);
+                else if (throttledUntil > 0L) timeout = Math.max(1L, throttledUntil - now);
+                else if (conn.probe) timeout = Math.max(1L, Math.min(PING_MS, conn.lastRecvAt + LIVENESS_MS - now));
+                else if (conn.mcast != null) timeout = PING_MS;
+                else timeout = 0L; // connected: sleep until IO or a send wakes us
+
+                selector.select(timeout);
+
+                Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+                while (it.hasNext()) {
+                    SelectionKey k = it.next();
+                    it.remove();
+                    handleKey(k);
+                }
+
+                Connection c = conn;
+                if (c == null) continue;
+                if (c.state == Connection.State.CONNECTING && System.currentTimeMillis() >= c.connectDeadline) {
+                    close(c);
+                } else if (c.state == Connection.State.CONNECTED) {
+                    if (!c.heard && !handshake(c)) continue;
+                    if (c.probe && !probe(c)) continue;
+                    if (c.mcast != null) checkMcast(c);
+                    boolean rateReady = throttledUntil > 0L && System.currentTimeMillis() >= throttledUntil;
+                    if (writeWakeup.getAndSet(false) || rateReady) flush(c);
+                }
+            } catch (Throwable t) {
+                if (conn != null) close(conn);
+            }
+        }
+    }
+
+    /** False if the relay said nothing since the connect and the connection was dropped. */
+    private boolean handshake(Connection c) {
+        long quiet = System.currentTimeMillis() - c.establishedAt;
+        if (quiet < HANDSHAKE_MS) return true;
+        System.out.println("[InputSync] relay " + endpoints.get(endpoint) + " accepted but said nothing for " + quiet + "ms");
+        close(c);
+        return false;
+    }
+
+    /** False if the relay went silent and the connection was dropped. */
+    private boolean probe(Connection c) {
+        long now = System.currentTimeMillis();
+        long quiet = now - c.lastRecvAt;
+        if (quiet >= LIVENESS_MS) {
+            System.out.println("[InputSync] relay " + endpoints.get(endpoint) + " silent for " + quiet + "ms");
+            if (endpoints.size() > 1) skipUntil[endpoint] = now + SILENT_SKIP_MS;
+            c.heard = false; // hung, not restarted: go to the next relay
+            close(c);
+            return false;
+        }
+        if (quiet >= PING_MS && now - c.lastPingAt >= PING_MS) {
+            c.lastPingAt = now;
+            c.send("PING");
+        }
+        return true;
+    }
+
+    /* ===================== MULTICAST ===================== */
+
+    /** IO thread (from onLine): join the relay's multicast group; MOVE_ keeps coming over TCP until MCAST_OK. */
+    void joinMulticast(Connection c, String group, int port, String tag, String ifName) {
+        if (c != conn || c.mcast != null) return;
+        try {
+            McastReceiver m = McastReceiver.join(group, port, tag, ifName, c.localAddress());
+            m.channel.register(selector, SelectionKey.OP_READ, c);
+            c.mcast = m;
+            System.out.println("[InputSync] multicast joined " + m.stats());
+        } catch (IOException | RuntimeException e) {
+            System.out.println("[InputSync] multicast join failed, staying on TCP: " + e);
+        }
+    }
+
+    private void readMcast(Connection c) throws IOException {
+        McastReceiver m = c.mcast;
+        if (m == null) return;
+        if (!m.read(listener::onLine)) {
+            dropMcast(c, "too much loss");
+            return;
+        }
+        if (!m.confirmed && m.heard()) {
+            m.confirmed = true;
+            c.send("MCAST_OK"); // relay stops MOVE_ over TCP for us
+        }
+    }
+
+    private void checkMcast(Connection c) {
+        McastReceiver m = c.mcast;
+        long quiet = System.currentTimeMillis() - m.lastRecvAt;
+        if (quiet >= (m.confirmed ? McastReceiver.SILENCE_MS : 3 * McastReceiver.SILENCE_MS)) dropMcast(c, "silent for " + quiet + "ms");
+    }
+
+    /** Back to TCP for MOVE_ on this connection. */
+    private void dropMcast(Connection c, String why) {
+        McastReceiver m = c.mcast;
+        if (m == null) return;
+        c.mcast = null;
+        System.out.println("[InputSync] multicast off (" + why + "): " + m.stats());
+        m.close();
+        if (m.confirmed) c.send("MCAST_OFF");
+    }
+
+    private void connect(long now) {
+        if (now < skipUntil[endpoint]) {
+            scheduleRetry();
+            return;
+        }
+        SocketChannel ch = null;
+        try {
+            ch = SocketChannel.open();
+            ch.configureBlocking(false);
+            ch.setOption(StandardSocketOptions.TCP_NODELAY, true);
+
+            Connection c = new Connection(this, ch, now + CONNECT_TIMEOUT_MS);
+            conn = c;
+            InetSocketAddress ep = endpoints.get(endpoint);
+            boolean done = ch.connect(new InetSocketAddress(ep.getHostString(), ep.getPort()));
+            c.key = ch.register(selector, done ? SelectionKey.OP_READ : SelectionKey.OP_CONNECT, c);
+            if (done) established(c);
+        } catch (IOException | RuntimeException e) {
+            try { if (ch != null) ch.close(); } catch (IOException ignored) {}
+            conn = null;
+            scheduleRetry();
+        }
+    }
+
+    private void handleKey(SelectionKey k) {
+        Connection c = (Connection) k.attachment();
+        if (c == null || c != conn || !k.isValid()) return;
+        try {
+            if (k.channel() instanceof DatagramChannel) {
+                if (k.isReadable()) readMcast(c);
+                return;
+            }
+            if (k.isConnectable()) {
+                if (!c.channel.finishConnect()) return;
+                k.interestOps(SelectionKey.OP_READ);
+                established(c);
+            }
+            if (k.isValid() && k.isReadable()) read(c);
+            if (c.state == Connection.State.CONNECTED && k.isValid() && k.isWritable()) flush(c);
+        } catch (IOException | RuntimeException e) {
+            close(c);
+        }
+    }
+
+    private void established(Connection c) {
+        c.state = Connection.State.CONNECTED;
+        c.establishedAt = System.currentTimeMillis();
+        c.lastRecvAt = c.establishedAt;
+        listener.onConnected(c);
+        flush(c);
+    }
+
+    private void read(Connection c) throws IOException {
+        readBuf.clear();
+        int n = c.channel.read(readBuf);
+        if (n < 0) {
+            close(c);
+            return;
+        }
+        if (n > 0) {
+            c.lastRecvAt = System.currentTimeMillis();
+            c.heard = true;
+            SyncEvents.Read ev = SyncEvents.read();
+            readLines = 0;
+            c.codec.decode(readBuf.array(), 0, n, lineSink);
+            SyncEvents.end(ev, n, readLines);
+        }
+    }
+
+    private void flush(Connection c) {
+        try {
+            listener.onWritable(c);
+            long r = c.flush();
+            throttledUntil = r > 0L ? System.currentTimeMillis() + r : 0L;
+            if (c.key.isValid()) {
+                c.key.interestOps(r == Connection.SOCKET_FULL ? SelectionKey.OP_READ | SelectionKey.OP_WRITE : SelectionKey.OP_READ);
+            }
+        } catch (IOException e) {
+            close(c);
+        }
+    }
+
+    private void close(Connection c) {
+        if (c.state == Connection.State.CLOSED) return;
+        boolean wasConnected = c.state == Connection.State.CONNECTED;
+        c.state = Connection.State.CLOSED;
+        if (c.key != null) c.key.cancel();
+        try { c.channel.close(); } catch (IOException ignored) {}
+        c.codec.close();
+        if (c.mcast != null) {
+            c.mcast.close();
+            c.mcast = null;
+        }
+        if (conn == c) conn = null;
+        throttledUntil = 0L;
+
+        if (wasConnected) listener.onClosed(c);
+        if (c.heard) {
+            // A working relay dropped us: retry it right away, then move on if it is gone.
+            // If it keeps doing that, back off as for a failed round.
+            long now = System.currentTimeMillis();
+            flaps = now - c.establishedAt < STABLE_MS ? flaps + 1 : 0;
+            if (flaps > 1) System.out.println("[InputSync] relay " + endpoints.get(endpoint) + " dropped us " + flaps + " times in a row");
+            attempt = 0;
+            nextAttemptAt = now + reconnectDelayMillis(flaps - 1);
+            return;
+        }
+        scheduleRetry();
+    }
+
+    /** This relay failed: try the next one now; back off only once every relay failed in a row. */
+    private void scheduleRetry() {
+        endpoint = (endpoint + 1) % endpoints.size();
+        if (endpoint != 0) {
+            nextAttemptAt = System.currentTimeMillis();
+            return;
+        }
+        nextAttemptAt = System.currentTimeMillis() + reconnectDelayMillis(attempt);
+        attempt++;
+    }
+
+    /** attempt 0 = retry immediately; afterwards 50ms, 100ms, ... capped at 1s, with jitter in [d/2, d]. */
+    private static long reconnectDelayMillis(int attempt) {
+        if (attempt <= 0) return 0L;
+        long d = Math.min(RECONNECT_MAX_MS, RECONNECT_BASE_MS << Math.min(attempt - 1, 10));
+        return d / 2 + ThreadLocalRandom.current().nextLong(d / 2 + 1);
+    }
+}
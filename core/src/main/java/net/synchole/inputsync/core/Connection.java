@@ -0,0 +1,127 @@
+package net.synchole.inputsync.core;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+
+/**
+ * One relay connection: channel, codec, outbound queue and state.
+ *
+ * Owned by the {@link ClientIO} thread; {@link #send} may be called from any thread.
+ * Lines are queued by class in an {@link OutboundScheduler} and only encoded when the IO thread
+ * writes them, so the deflate stream always matches wire order.
+ */
+final class Connection {
+
+    enum State { CONNECTING, CONNECTED, CLOSED }
+
+    final SocketChannel channel;
+    final WireCodec codec = new WireCodec();
+    final OutboundScheduler scheduler = new OutboundScheduler();
+    final long connectDeadline;
+
+    private final ClientIO io;
+
+    /** IO thread only: encoded message not yet fully written */
+    private ByteBuffer pending;
+
+    volatile State state = State.CONNECTING;
+    SelectionKey key;
+
+    /** Settled by the relay's WELCOME; 1 / none until then (or forever with an old relay) */
+    volatile int protocol = 1;
+    volatile int caps = 0;
+    /** Relay answers PING: ClientIO probes it and fails over when it goes silent */
+    volatile boolean probe = false;
+
+    /** LAN multicast side channel for MOVE_, if joined (IO thread writes) */
+    volatile McastReceiver mcast;
+
+    /** IO thread only: liveness */
+    long establishedAt = 0L;
+    long lastRecvAt = 0L;
+    long lastPingAt = 0L;
+    boolean heard = false;
+
+    Connection(ClientIO io, SocketChannel channel, long connectDeadline) {
+        this.io = io;
+        this.channel = channel;
+        this.connectDeadline = connectDeadline;
+    }
+
+    boolean isConnected() {
+        return state == State.CONNECTED;
+    }
+
+    /** IO thread (from onLine): see {@link ClientIO#joinMulticast}. */
+    void joinMulticast(String group, int port, String tag, String ifName) {
+        io.joinMulticast(this, group, port, tag, ifName);
+    }
+
+    InetAddress localAddress() {
+        try {
+            SocketAddress a = channel.getLocalAddress();
+            if (a instanceof InetSocketAddress isa) return isa.getAddress();
+        } catch (IOException ignored) {}
+        return null;
+    }
+
+    InetAddress remoteAddress() {
+        try {
+            SocketAddress a = channel.getRemoteAddress();
+            if (a instanceof InetSocketAddress isa) return isa.getAddress();
+        } catch (IOException ignored) {}
+        return null;
+    }
+
+    /** Queues one line; the IO thread writes it. */
+    void send(String line) {
+        if (state == State.CLOSED) return;
+        scheduler.offer(line, false);
+        io.wakeupForWrite();
+    }
+
+    /** Queues a plain line, then deflates everything after it. */
+    void sendThenDeflate(String line) {
+        if (state == State.CLOSED) return;
+        scheduler.offer(line, true);
+        io.wakeupForWrite();
+    }
+
+    /** Any thread: lines were captured elsewhere (SyncClient's capture ring), pull them on the IO thread. */
+    void requestFlush() {
+        if (state == State.CLOSED) return;
+        io.wakeupForWrite();
+    }
+
+    /** flush() results */
+    static final long DRAINED = 0L, SOCKET_FULL = -1L;
+
+    /**
+     * IO thread: writes until the socket would block or the rate cap kicks in.
+     * Returns DRAINED, SOCKET_FULL, or the millis to wait for the token bucket.
+     */
+    long flush() throws IOException {
+        while (true) {
+            if (pending == null) {
+                OutboundScheduler.Outbound o = scheduler.poll();
+                if (o == null) return scheduler.isEmpty() ? DRAINED : Math.max(1L, scheduler.throttleDelayMillis());
+                SyncEvents.Send ev = SyncEvents.send();
+                pending = ByteBuffer.wrap(codec.encode(o.line));
+                if (o.deflateAfter) codec.startDeflate();
+                int wire = pending.remaining();
+                scheduler.charge(wire);
+                channel.write(pending);
+                SyncEvents.end(ev, o.line, wire, pending.hasRemaining());
+            } else {
+                channel.write(pending);
+            }
+            if (pending.hasRemaining()) return SOCKET_FULL;
+            pending = null;
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package net.synchole.inputsync.core;
+
+/**
+ * What {@link SyncClient} needs from the game it runs in. The Fabric mod implements it in
+ * NetworkClient; headless runs (benchmarks, stress clients) implement it with plain counters.
+ *
+ * Every callback runs on the client's IO thread: hand game work to the game thread and return.
+ */
+public interface GameAdapter {
+
+    /** TCP is up, before HELLO: forget anything tied to the previous connection. */
+    default void onConnected() {}
+
+    /** The connection is gone; the client reconnects on its own. */
+    default void onDisconnected() {}
+
+    /** ROLE_LEADER / ROLE_FOLLOWER; {@code changed} is false when the relay repeats our role. */
+    void onRole(boolean leader, boolean changed);
+
+    /** Newest leader movement for this follower. Latest wins: the game applies whatever is newest on its tick. */
+    void onMove(MoveState move);
+
+    /**
+     * A leader event for this follower (everything but MOVE_ and control lines).
+     * Return false if it is not handled here; it is counted as dropped.
+     */
+    boolean onEvent(MessageType type, String msg);
+
+    /** The relay asked for a metrics dump (DUMP_METRICS). */
+    default void onDumpMetrics() {}
+}
@@ -0,0 +1,152 @@
+package net.synchole.inputsync.core;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.NetworkInterface;
+import java.net.StandardProtocolFamily;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.MembershipKey;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.function.Consumer;
+
+/**
+ * LAN multicast side channel for continuous leader state (MOVE_).
+ *
+ * The relay announces MCAST_<group>_<port>_<tag> after WELCOME when both sides have the mcast
+ * cap. We join the group and, once the first datagram arrives, tell the relay MCAST_OK so it
+ * stops sending us MOVE_ over TCP. The relay stays authoritative for everything else.
+ *
+ * Datagram: <tag>_<seq>_<frame>\n. The tag tells relays sharing a group apart; seq detects gaps
+ * (counted as lost) and reordering (older frames are dropped: MOVE_ is latest-wins). The relay
+ * sends MCAST_HB when idle, so silence means the path is broken. On silence or heavy loss we
+ * leave the group and send MCAST_OFF, and the relay goes back to TCP for us.
+ *
+ * IO thread only.
+ */
+final class McastReceiver {
+
+    static final long SILENCE_MS = 1000L;
+    private static final int LOSS_WINDOW = 200;
+    private static final int LOSS_MAX = 20; // per window (10%)
+
+    final DatagramChannel channel;
+    private final MembershipKey membership;
+    private final String tag;
+    private final String where;
+    private final ByteBuffer buf = ByteBuffer.allocate(8 * 1024);
+
+    /** IO thread only */
+    boolean confirmed = false;
+    long lastRecvAt;
+    private long lastSeq = -1L;
+    private long received = 0L, lost = 0L, stale = 0L, foreign = 0L;
+    private int windowCount = 0, windowLost = 0;
+
+    private McastReceiver(DatagramChannel channel, MembershipKey membership, String tag, String where) {
+        this.channel = channel;
+        this.membership = membership;
+        this.tag = tag;
+        this.where = where;
+        this.lastRecvAt = System.currentTimeMillis();
+    }
+
+    /**
+     * Joins group:port on {@code ifName} (a name or address), or else on the interface of the
+     * relay connection's local address (the loopback interface for a local relay).
+     */
+    static McastReceiver join(String group, int port, String tag, String ifName, InetAddress local) throws IOException {
+        NetworkInterface nif = null;
+        if (ifName != null && !ifName.isEmpty()) {
+            nif = NetworkInterface.getByName(ifName);
+            if (nif == null) nif = NetworkInterface.getByInetAddress(InetAddress.getByName(ifName));
+        }
+        if (nif == null && local != null) nif = NetworkInterface.getByInetAddress(local);
+        if (nif == null) throw new IOException("no interface for multicast (set inputsync.mcastIf)");
+
+        DatagramChannel ch = DatagramChannel.open(StandardProtocolFamily.INET);
+        try {
+            ch.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+            ch.bind(new InetSocketAddress(port));
+            MembershipKey key = ch.join(InetAddress.getByName(group), nif);
+            ch.configureBlocking(false);
+            return new McastReceiver(ch, key, tag, group + ":" + port + " on " + nif.getName());
+        } catch (IOException | RuntimeException e) {
+            ch.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Reads every queued datagram and hands accepted frames (without the newline) to sink.
+     * Returns false once loss over the last window is too high to keep using the group.
+     */
+    boolean read(Consumer<String> sink) throws IOException {
+        while (true) {
+            buf.clear();
+            if (channel.receive(buf) == null) return true;
+            lastRecvAt = System.currentTimeMillis();
+            String d = new String(buf.array(), 0, buf.position(), StandardCharsets.UTF_8);
+
+            int a = d.indexOf('_');
+            int b = a < 0 ? -1 : d.indexOf('_', a + 1);
+            if (b < 0 || !tag.equals(d.substring(0, a))) {
+                foreign++;
+                continue;
+            }
+            long seq;
+            try {
+                seq = Long.parseLong(d.substring(a + 1, b));
+            } catch (NumberFormatException e) {
+                foreign++;
+                continue;
+            }
+            if (seq <= lastSeq) {
+                stale++;
+                continue;
+            }
+            long gap = lastSeq < 0 ? 0 : seq - lastSeq - 1;
+            lastSeq = seq;
+            received++;
+            lost += gap;
+            windowCount += 1 + (int) Math.min(gap, LOSS_WINDOW);
+            windowLost += (int) Math.min(gap, LOSS_WINDOW);
+            if (windowCount >= LOSS_WINDOW) {
+                boolean bad = windowLost > LOSS_MAX;
+                windowCount = windowLost = 0;
+                if (bad) return false;
+            }
+
+            int end = d.endsWith("\n") ? d.length() - 1 : d.length();
+            String frame = d.substring(b + 1, end);
+            if (!frame.equals("MCAST_HB")) sink.accept(frame);
+        }
+    }
+
+    /** At least one datagram from our relay arrived: the path works. */
+    boolean heard() {
+        return received > 0L;
+    }
+
+    /** Frames skipped by seq gaps, and frames dropped as older than one already accepted. */
+    long lost() {
+        return lost;
+    }
+
+    long stale() {
+        return stale;
+    }
+
+    void close() {
+        try { membership.drop(); } catch (Throwable ignored) {}
+        try { channel.close(); } catch (IOException ignored) {}
+    }
+
+    String stats() {
+        return String.format(Locale.ROOT, "%s rx %d lost %d stale %d foreign %d%s",
+                where, received, lost, stale, foreign, confirmed ? "" : " (unconfirmed)");
+    }
+}
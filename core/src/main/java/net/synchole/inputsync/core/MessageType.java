@@ -0,0 +1,21 @@
+package net.synchole.inputsync.core;
+
+/** Wire message types, by line prefix; used for counters, QoS-independent accounting and JFR. */
+public enum MessageType {
+    MOVE, KEYS, CLICK, INVB, INV, OPEN, CLOSE, HBAR, CHAT_SET, CHAT_SEND, UI, CONTROL;
+
+    public static MessageType of(String msg) {
+        if (msg.startsWith("MOVE_")) return MOVE;
+        if (msg.startsWith("KEYS_") || msg.startsWith("KEYMAP_")) return KEYS;
+        if (msg.startsWith("CLK_")) return CLICK;
+        if (msg.startsWith("INVB_")) return INVB;
+        if (msg.startsWith("INV_")) return INV;
+        if (msg.startsWith("OPEN_")) return OPEN;
+        if (msg.startsWith("CLOSE_")) return CLOSE;
+        if (msg.startsWith("HBAR_")) return HBAR;
+        if (msg.startsWith("CHAT_SET_")) return CHAT_SET;
+        if (msg.startsWith("CHAT_SEND")) return CHAT_SEND;
+        if (msg.startsWith("UI_")) return UI;
+        return CONTROL;
+    }
+}
@@ -0,0 +1,82 @@
+package net.synchole.inputsync.core;
+
+/**
+ * Continuous leader state, one MOVE_ line:
+ *
+ *   MOVE_yaw_pitch_fwd_strafe_jump_sneak_sprint_attackHeld_useHeld_hotbar[_clk]
+ *
+ * fwd/strafe: +1 forward/right, -1 back/left. clk = 1 when the leader also sends its clicks as
+ * CLK_ (older parsers ignore the field). Immutable; latest wins on the follower.
+ */
+public final class MoveState {
+
+    public final float yaw, pitch;
+    public final float forward, strafe;
+    public final boolean jump, sneak, sprint, attackHeld, useHeld;
+    public final int hotbar;
+    public final boolean clickStream;
+
+    public MoveState(float yaw, float pitch, float forward, float strafe,
+                     boolean jump, boolean sneak, boolean sprint,
+                     boolean attackHeld, boolean useHeld, int hotbar, boolean clickStream) {
+        this.yaw = yaw;
+        this.pitch = pitch;
+        this.forward = forward;
+        this.strafe = strafe;
+        this.jump = jump;
+        this.sneak = sneak;
+        this.sprint = sprint;
+        this.attackHeld = attackHeld;
+        this.useHeld = useHeld;
+        this.hotbar = hotbar;
+        this.clickStream = clickStream;
+    }
+
+    /**
+     * Leader: encodes a MOVE_ line straight into {@code out}, no objects.
+     * Same text as String.format("MOVE_%f_%f_%f_%f_%d_%d_%d_%d_%d_%d", ...), plus _1 with CLK_.
+     */
+    public static boolean encode(CaptureRing out, float yaw, float pitch, float forward, float strafe,
+                                 boolean jump, boolean sneak, boolean sprint,
+                                 boolean attackHeld, boolean useHeld, int hotbar, boolean clickStream) {
+        out.begin().put("MOVE_")
+                .putFixed(yaw, 6).put('_')
+                .putFixed(pitch, 6).put('_')
+                .putFixed(forward, 6).put('_')
+                .putFixed(strafe, 6).put('_')
+                .put(jump ? '1' : '0').put('_')
+                .put(sneak ? '1' : '0').put('_')
+                .put(sprint ? '1' : '0').put('_')
+                .put(attackHeld ? '1' : '0').put('_')
+                .put(useHeld ? '1' : '0').put('_')
+                .putInt(hotbar);
+        if (clickStream) out.put("_1");
+        return out.commit();
+    }
+
+    public boolean encode(CaptureRing out) {
+        return encode(out, yaw, pitch, forward, strafe, jump, sneak, sprint, attackHeld, useHeld, hotbar, clickStream);
+    }
+
+    /** null if the line is not a well-formed MOVE_ */
+    public static MoveState parse(String msg) {
+        try {
+            String[] p = msg.split("_");
+            return new MoveState(
+                    Float.parseFloat(p[1]),
+                    Float.parseFloat(p[2]),
+                    Float.parseFloat(p[3]),
+                    Float.parseFloat(p[4]),
+                    "1".equals(p[5]),
+                    "1".equals(p[6]),
+                    "1".equals(p[7]),
+                    "1".equals(p[8]),
+                    "1".equals(p[9]),
+                    Integer.parseInt(p[10]),
+                    p.length > 11 && "1".equals(p[11])
+            );
+        } catch (Throwable t) {
+            return null;
+        }
+    }
+}
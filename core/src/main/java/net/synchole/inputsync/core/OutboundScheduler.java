@@ -0,0 +1,252 @@
+package net.synchole.inputsync.core;
+
+import java.util.ArrayDeque;
+import java.util.Locale;
+
+/**
+ * Outbound QoS: messages are classified, queued per class and drained by deficit round robin
+ * (charged in raw UTF-8 wire bytes) under a token-bucket byte rate.
+ *
+ * - MOVE:     continuous state, latest-only (a queued frame is replaced by a newer one)
+ * - RELIABLE: handshake/control and OPEN_/CLOSE_/INV*_/HBAR_/CHAT_SEND, never dropped
+ * - CHAT:     CHAT_SET_ buffers, a queued buffer is replaced by a newer one when nothing was queued after it
+ * - UI:       UI_ debug traffic, oldest dropped beyond its queue cap
+ *
+ * RELIABLE and CHAT are kept in their original relative order (OPEN_CHAT, CHAT_SET, CHAT_SEND),
+ * so weights only arbitrate between that stream, MOVE and UI.
+ *
+ * Config (system properties):
+ *   inputsync.qos.weights = move:8,reliable:4,chat:2,ui:1
+ *   inputsync.qos.rate    = bytes per second, 0 = unlimited
+ *   inputsync.qos.burst   = token bucket size in bytes
+ *   inputsync.qos.uiQueue = max queued UI_ lines
+ */
+final class OutboundScheduler {
+
+    enum MsgClass { MOVE, RELIABLE, CHAT, UI }
+
+    static final class Outbound {
+        final String line;
+        final MsgClass cls;
+        final long ordinal;
+        final long enqueuedNanos;
+        final boolean deflateAfter;
+        /** Raw UTF-8 bytes on the wire, '\n' included: what DRR charges */
+        final int bytes;
+
+        Outbound(String line, MsgClass cls, long ordinal, long enqueuedNanos, boolean deflateAfter) {
+            this.line = line;
+            this.cls = cls;
+            this.ordinal = ordinal;
+            this.enqueuedNanos = enqueuedNanos;
+            this.deflateAfter = deflateAfter;
+            this.bytes = WireCodec.rawLength(line);
+        }
+    }
+
+    private static final int QUANTUM_BYTES = 256;
+    private static final MsgClass[] CLASSES = MsgClass.values();
+
+    private static final int[] WEIGHTS = parseWeights(System.getProperty("inputsync.qos.weights", "move:8,reliable:4,chat:2,ui:1"));
+    private static final long RATE = Long.parseLong(System.getProperty("inputsync.qos.rate", "0"));
+    private static final long BURST = Long.parseLong(System.getProperty("inputsync.qos.burst", "16384"));
+    private static final int UI_QUEUE = Integer.parseInt(System.getProperty("inputsync.qos.uiQueue", "256"));
+
+    private final ClassQueue[] queues = new ClassQueue[CLASSES.length];
+    private long nextOrdinal = 1L;
+    private long lastOrderedOrdinal = 0L;
+    private int size = 0;
+
+    /** Deficit round robin cursor */
+    private int cur = 0;
+    private boolean visiting = false;
+
+    /** Token bucket */
+    private double tokens = BURST;
+    private long lastRefillNanos = System.nanoTime();
+
+    OutboundScheduler() {
+        for (MsgClass c : CLASSES) queues[c.ordinal()] = new ClassQueue(c, Math.max(1, WEIGHTS[c.ordinal()]) * QUANTUM_BYTES);
+    }
+
+    static MsgClass classify(String line) {
+        if (line.startsWith("MOVE_")) return MsgClass.MOVE;
+        if (line.startsWith("CHAT_SET_")) return MsgClass.CHAT;
+        if (line.startsWith("UI_")) return MsgClass.UI;
+        return MsgClass.RELIABLE;
+    }
+
+    /* ===================== PRODUCERS (any thread) ===================== */
+
+    synchronized void offer(String line, boolean deflateAfter) {
+        MsgClass cls = classify(line);
+        ClassQueue q = queues[cls.ordinal()];
+        long now = System.nanoTime();
+
+        switch (cls) {
+            case MOVE -> {
+                if (!q.items.isEmpty()) {
+                    q.items.pollLast();
+                    q.coalesced++;
+                    size--;
+                }
+            }
+            case CHAT -> {
+                Outbound tail = q.items.peekLast();
+                if (tail != null && tail.ordinal == lastOrderedOrdinal) {
+                    // Nothing ordered was queued after it: the newer buffer simply supersedes it
+                    q.items.pollLast();
+                    q.items.addLast(new Outbound(line, cls, tail.ordinal, tail.enqueuedNanos, deflateAfter));
+                    q.coalesced++;
+                    return;
+                }
+            }
+            case UI -> {
+                if (q.items.size() >= UI_QUEUE) {
+                    q.items.pollFirst();
+                    q.dropped++;
+                    size--;
+                }
+            }
+            default -> {}
+        }
+
+        long ord = nextOrdinal++;
+        if (isOrdered(cls)) lastOrderedOrdinal = ord;
+        q.items.addLast(new Outbound(line, cls, ord, now, deflateAfter));
+        size++;
+    }
+
+    /* ===================== CONSUMER (IO thread) ======================= */
+
+    synchronized boolean isEmpty() {
+        return size == 0;
+    }
+
+    /** Next message to write, or null if empty or the token bucket is dry. */
+    synchronized Outbound poll() {
+        if (size == 0) return null;
+        long now = System.nanoTime();
+        refill(now);
+        if (RATE > 0 && tokens <= 0) return null;
+
+        Outbound picked = null;
+        for (int guard = 0; guard < CLASSES.length * 8 && picked == null; guard++) {
+            ClassQueue q = queues[cur];
+            Outbound head = q.items.peekFirst();
+            if (head == null) {
+                q.deficit = 0;
+            } else if (eligible(q, head)) {
+                if (!visiting) {
+                    q.deficit += q.quantum;
+                    visiting = true;
+                }
+                if (head.bytes <= q.deficit) {
+                    q.deficit -= head.bytes;
+                    picked = head;
+                    break;
+                }
+            }
+            cur = (cur + 1) % CLASSES.length;
+            visiting = false;
+        }
+
+        if (picked == null) {
+            // Oversized head that no deficit covers yet: send the first eligible head anyway
+            for (ClassQueue q : queues) {
+                Outbound head = q.items.peekFirst();
+                if (head != null && eligible(q, head)) { picked = head; break; }
+            }
+            if (picked == null) return null;
+        }
+
+        ClassQueue q = queues[picked.cls.ordinal()];
+        q.items.pollFirst();
+        size--;
+        q.recordLatency(now - picked.enqueuedNanos);
+        return picked;
+    }
+
+    /** Charge written wire bytes against the bucket. */
+    synchronized void charge(int bytes) {
+        if (RATE > 0) tokens -= bytes;
+    }
+
+    /** Millis until the bucket allows another write (0 if it already does). */
+    synchronized long throttleDelayMillis() {
+        if (RATE <= 0 || size == 0) return 0L;
+        refill(System.nanoTime());
+        if (tokens > 0) return 0L;
+        return Math.max(1L, (long) Math.ceil((1 - tokens) * 1000.0 / RATE));
+    }
+
+    private void refill(long now) {
+        if (RATE <= 0) return;
+        tokens = Math.min(BURST, tokens + (now - lastRefillNanos) * RATE / 1e9);
+        lastRefillNanos = now;
+    }
+
+    private static boolean isOrdered(MsgClass c) {
+        return c == MsgClass.RELIABLE || c == MsgClass.CHAT;
+    }
+
+    /** RELIABLE and CHAT heads go out in enqueue order relative to each other. */
+    private boolean eligible(ClassQueue q, Outbound head) {
+        if (!isOrdered(q.cls)) return true;
+        ClassQueue other = queues[(q.cls == MsgClass.RELIABLE ? MsgClass.CHAT : MsgClass.RELIABLE).ordinal()];
+        Outbound oh = other.items.peekFirst();
+        return oh == null || head.ordinal < oh.ordinal;
+    }
+
+    /* ===================== STATS ====================================== */
+
+    synchronized String stats() {
+        StringBuilder sb = new StringBuilder();
+        for (ClassQueue q : queues) {
+            if (sb.length() > 0) sb.append(", ");
+            sb.append(q.cls.name().toLowerCase(Locale.ROOT)).append(' ').append(q.sent);
+            if (q.sent > 0) {
+                sb.append(String.format(Locale.ROOT, " avg %.2fms max %.2fms",
+                        q.latencySumNanos / 1e6 / q.sent, q.latencyMaxNanos / 1e6));
+            }
+            if (q.coalesced > 0) sb.append(" coalesced ").append(q.coalesced);
+            if (q.dropped > 0) sb.append(" dropped ").append(q.dropped);
+            if (!q.items.isEmpty()) sb.append(" queued ").append(q.items.size());
+        }
+        return sb.toString();
+    }
+
+    private static int[] parseWeights(String spec) {
+        int[] w = {8, 4, 2, 1};
+        for (String part : spec.split(",")) {
+            String[] kv = part.trim().split(":");
+            if (kv.length != 2) continue;
+            try {
+                MsgClass c = MsgClass.valueOf(kv[0].trim().toUpperCase(Locale.ROOT));
+                w[c.ordinal()] = Integer.parseInt(kv[1].trim());
+            } catch (IllegalArgumentException ignored) {}
+        }
+        return w;
+    }
+
+    private static final class ClassQueue {
+        final MsgClass cls;
+        final int quantum;
+        final ArrayDeque<Outbound> items = new ArrayDeque<>();
+        int deficit = 0;
+
+        long sent, coalesced, dropped;
+        long latencySumNanos, latencyMaxNanos;
+
+        ClassQueue(MsgClass cls, int quantum) {
+            this.cls = cls;
+            this.quantum = quantum;
+        }
+
+        void recordLatency(long nanos) {
+            sent++;
+            latencySumNanos += nanos;
+            if (nanos > latencyMaxNanos) latencyMaxNanos = nanos;
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package net.synchole.inputsync.core;
+
+/**
+ * Wire protocol version and capability flags.
+ *
+ * Handshake: the client sends HELLO_<session>_<lastSeq>_<version>_<caps>, the relay answers
+ * WELCOME_<version>_<caps> with the common subset, and both sides use only that subset on the
+ * connection. Caps travel as comma-separated names so either side can ignore names it does not
+ * know. A relay that never answers is treated as version 1 with no caps (plain text, INV_ clicks).
+ */
+public final class Protocol {
+
+    /** 1 = text lines, no handshake; 2 = HELLO/WELCOME with caps */
+    public static final int VERSION = 2;
+
+    public static final int ZLIB = 1;             // deflate stream after ZLIB_REQ/ZLIB_OK/ZLIB_ON
+    public static final int INVB = 1 << 1;        // batched inventory clicks (INVB_)
+    public static final int BINARY = 1 << 2;      // binary frames (reserved)
+    public static final int DELTA_MOVE = 1 << 3;  // delta-encoded MOVE (reserved)
+    public static final int UDP = 1 << 4;         // MOVE over a UDP side channel (reserved)
+    public static final int TIMESTAMPS = 1 << 5;  // sender timestamps on events (reserved)
+    public static final int KEYS = 1 << 6;        // key binding bitset (KEYMAP_/KEYS_)
+    public static final int PING = 1 << 7;        // relay answers PING with PONG (liveness probe)
+    public static final int MCAST = 1 << 8;       // MOVE_ over LAN multicast (MCAST_/MCAST_OK/MCAST_OFF)
+    public static final int CLK = 1 << 9;         // attack/use click edges (CLK_)
+    public static final int TAKEOVER = 1 << 10;   // optimistic leader takeover (FOCUS_1_<epoch>/TAKEOVER_OK/TAKEOVER_NO, EPOCH_)
+
+    private static final String[] NAMES = {"zlib", "invb", "bin", "dmove", "udp", "ts", "keys", "ping", "mcast", "clk", "takeover"};
+
+    /** What this build implements */
+    public static final int SUPPORTED = ZLIB | INVB | KEYS | PING | MCAST | CLK | TAKEOVER;
+
+    private Protocol() {}
+
+    public static boolean has(int caps, int flag) {
+        return (caps & flag) != 0;
+    }
+
+    public static String format(int caps) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < NAMES.length; i++) {
+            if ((caps & (1 << i)) == 0) continue;
+            if (sb.length() > 0) sb.append(',');
+            sb.append(NAMES[i]);
+        }
+        return sb.toString();
+    }
+
+    /** Unknown names are ignored. */
+    public static int parse(String s) {
+        int caps = 0;
+        if (s == null || s.isEmpty()) return 0;
+        for (String name : s.split(",")) {
+            for (int i = 0; i < NAMES.length; i++) {
+                if (NAMES[i].equals(name.trim())) caps |= 1 << i;
+            }
+        }
+        return caps;
+    }
+}
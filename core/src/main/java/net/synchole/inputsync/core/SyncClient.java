@@ -0,0 +1,478 @@
+package net.synchole.inputsync.core;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.UUID;
+
+/**
+ * One relay client, independent of the game: transport, handshake, session resumption, role,
+ * pause state, and the leader's capture ring. The game side is a {@link GameAdapter}.
+ *
+ * Threads: the game thread captures into {@link #out()} and calls {@link #requestFlush()};
+ * everything else runs on the client's IO thread (ClientIO), including the adapter callbacks.
+ *
+ * Takeover: a window that gains focus claims the leader role for the next epoch (FOCUS_1_<epoch>)
+ * and starts capturing right away. The capture ring holds those lines until the relay answers:
+ * TAKEOVER_OK flushes them in order, TAKEOVER_NO discards them. No input is lost to the round trip.
+ */
+public final class SyncClient {
+
+    /** Connection settings; {@link #fromSystemProperties()} reads the mod's inputsync.* properties. */
+    public static final class Options {
+        /** Failover list, primary first */
+        public List<InetSocketAddress> relays = List.of(InetSocketAddress.createUnresolved("127.0.0.1", 25590));
+        /** Session resumption: the relay replays reliable events we missed while disconnected */
+        public String sessionId = UUID.randomUUID().toString().replace("-", "").substring(0, 16);
+        /** Stream compression: auto = only for non-loopback relays, on = always, off = never */
+        public String compress = "auto";
+        /** LAN multicast for MOVE_ when the relay offers it; interface name or address (default: the relay route's) */
+        public boolean multicast = true;
+        public String multicastIf = "";
+        /** Caps to offer, before compress/multicast are applied */
+        public int caps = Protocol.SUPPORTED;
+        /** Capture ring size in bytes (power of two) */
+        public int ringBytes = 64 * 1024;
+
+        public static Options fromSystemProperties() {
+            Options o = new Options();
+            String host = System.getProperty("inputsync.host", "127.0.0.1");
+            int port = Integer.parseInt(System.getProperty("inputsync.port", "25590"));
+            o.relays = parseRelays(System.getProperty("inputsync.hosts", host + ":" + port), host, port);
+            o.compress = System.getProperty("inputsync.compress", "auto").toLowerCase(Locale.ROOT);
+            o.multicast = !"off".equalsIgnoreCase(System.getProperty("inputsync.mcast", "on"));
+            o.multicastIf = System.getProperty("inputsync.mcastIf", "");
+            return o;
+        }
+
+        /** host:port,host:port (unresolved; the port defaults to {@code port}) */
+        public static List<InetSocketAddress> parseRelays(String spec, String host, int port) {
+            List<InetSocketAddress> out = new ArrayList<>();
+            for (String part : spec.split(",")) {
+                String hp = part.trim();
+                if (hp.isEmpty()) continue;
+                int colon = hp.lastIndexOf(':');
+                String h = colon > 0 ? hp.substring(0, colon) : hp;
+                int p = colon > 0 ? safeParseInt(hp.substring(colon + 1), port) : port;
+                out.add(InetSocketAddress.createUnresolved(h, p));
+            }
+            if (out.isEmpty()) out.add(InetSocketAddress.createUnresolved(host, port));
+            return out;
+        }
+    }
+
+    private final Options options;
+    private final GameAdapter adapter;
+
+    /** Leader: outbound lines encoded in place on the game thread, drained by the IO thread */
+    private final CaptureRing out;
+
+    /** Current relay connection (null while reconnecting); owned by the IO thread */
+    private volatile Connection conn;
+    private volatile long lastSeq = 0L;
+
+    /** Assigned by the relay */
+    private volatile boolean leader = false;
+    /** PAUSE/RESUME from the relay console */
+    private volatile boolean enabled = true;
+
+    /** Window focus as reported by the game; resent to each new connection */
+    private volatile boolean focused = false;
+    /** Latest leadership epoch from the relay (EPOCH_/TAKEOVER_) */
+    private volatile long epoch = 0L;
+    /** Capturing under a claimed epoch the relay has not confirmed yet; the ring is held meanwhile */
+    private volatile boolean provisional = false;
+    private volatile long claimEpoch = 0L;
+    /** Claims sent (game thread) and answered (IO thread); replies come in order, only the last one counts */
+    private volatile int claimsSent = 0;
+    private volatile int claimsAnswered = 0;
+    private volatile long claimLines = 0L;
+    private volatile boolean discardClaim = false;
+    private long takeoversConfirmed = 0L, takeoversRejected = 0L;
+
+    /** Latest movement from the leader, and whether the game has taken it yet */
+    private volatile MoveState lastMove = null;
+    private volatile boolean lastMoveFresh = false;
+
+    private volatile boolean started = false;
+
+    public SyncClient(Options options, GameAdapter adapter) {
+        this.options = options;
+        this.adapter = adapter;
+        this.out = new CaptureRing(options.ringBytes);
+    }
+
+    /* ========================================================= */
+    /* ===================== LIFECYCLE ========================= */
+    /* ========================================================= */
+
+    public void start() throws IOException {
+        if (started) return;
+        started = true;
+        System.out.println("[InputSync] START " + options.relays + " session=" + options.sessionId);
+        new ClientIO(options.relays, new ClientIO.Listener() {
+            @Override public void onConnected(Connection c) { SyncClient.this.onConnected(c); }
+            @Override public void onLine(String line) { handleIncoming(line); }
+            @Override public void onWritable(Connection c) { drain(c); }
+            @Override public void onClosed(Connection c) { SyncClient.this.onClosed(c); }
+        }).start();
+    }
+
+    /* ========================================================= */
+    /* ===================== STATE ============================= */
+    /* ========================================================= */
+
+    public boolean isConnected() {
+        Connection c = conn;
+        return c != null && c.isConnected();
+    }
+
+    public boolean isLeader() {
+        return leader;
+    }
+
+    /** Leader, or claiming it: the game captures input while this is true. */
+    public boolean isCapturing() {
+        return leader || provisional;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean on) {
+        enabled = on;
+        System.out.println("[InputSync] Sync " + (enabled ? "ENABLED" : "DISABLED"));
+    }
+
+    public void toggle() {
+        setEnabled(!enabled);
+    }
+
+    /** Negotiated with the current relay */
+    public boolean hasCap(int flag) {
+        Connection c = conn;
+        return c != null && Protocol.has(c.caps, flag);
+    }
+
+    /**
+     * Game thread: window focus changed. Reports it to the relay; with takeover, gaining focus
+     * starts a provisional claim on the next epoch. Returns true if the game should start
+     * capturing as leader now (the claim is pending).
+     */
+    public boolean setFocused(boolean on) {
+        focused = on;
+        Connection c = conn;
+        if (c == null || !c.isConnected()) return false;
+
+        if (!on) {
+            if (provisional) {
+                discardClaim = true; // the IO thread clears the ring before it drains again
+                provisional = false;
+            }
+            c.send("FOCUS_0");
+            return false;
+        }
+        if (leader || provisional || !enabled || !Protocol.has(c.caps, Protocol.TAKEOVER)) {
+            c.send("FOCUS_1");
+            return false;
+        }
+        claimEpoch = epoch + 1;
+        claimLines = out.lines();
+        discardClaim = false;
+        provisional = true;
+        claimsSent++;
+        c.send("FOCUS_1_" + claimEpoch);
+        return true;
+    }
+
+    public String sessionId() {
+        return options.sessionId;
+    }
+
+    /** Newest leader movement (null before the first) */
+    public MoveState latestMove() {
+        return lastMove;
+    }
+
+    /** Game tick: true once per MOVE received since the last call. */
+    public boolean takeFreshMove() {
+        if (!lastMoveFresh) return false;
+        lastMoveFresh = false;
+        return true;
+    }
+
+    /* ========================================================= */
+    /* ===================== OUTBOUND ========================== */
+    /* ========================================================= */
+
+    /** Game thread only: the capture ring. Commit lines, then {@link #requestFlush()}. */
+    public CaptureRing out() {
+        return out;
+    }
+
+    /** Game thread only: queues a line behind the events already captured. */
+    public void send(String line) {
+        if (!isConnected()) return;
+        SyncEvents.Capture ev = SyncEvents.capture(out);
+        if (out.begin().put(line).commit()) SyncStats.sent(line);
+        SyncEvents.end(ev, out, "event");
+        requestFlush();
+    }
+
+    /** Game thread: a line of {@code type} was committed to the ring. */
+    public void published(MessageType type) {
+        SyncStats.sent(type);
+        requestFlush();
+    }
+
+    public void requestFlush() {
+        Connection c = conn;
+        if (c != null) c.requestFlush();
+    }
+
+    /* ========================================================= */
+    /* ===================== NETWORK =========================== */
+    /* ========================================================= */
+
+    /** IO thread: TCP is up. Identify the session first so the relay can replay what we missed. */
+    private void onConnected(Connection c) {
+        conn = c;
+        leader = false;
+        provisional = false;
+        claimsAnswered = claimsSent; // claims on the old connection are never answered
+        out.clear(); // captured for the previous connection
+        adapter.onConnected();
+
+        int caps = options.caps & Protocol.SUPPORTED;
+        if (!wantsCompression(c)) caps &= ~Protocol.ZLIB;
+        if (!options.multicast) caps &= ~Protocol.MCAST;
+        c.send("HELLO_" + options.sessionId + "_" + lastSeq + "_" + Protocol.VERSION + "_" + Protocol.format(caps));
+        if (focused) c.send("FOCUS_1"); // the relay forgets focus with the connection
+        System.out.println("[InputSync] CONNECTED");
+    }
+
+    /** IO thread: connection gone; ClientIO reconnects on its own. */
+    private void onClosed(Connection c) {
+        if (conn == c) {
+            conn = null;
+            leader = false;
+            provisional = false;
+        }
+        adapter.onDisconnected();
+        if (c.codec.isCompressed()) System.out.println("[InputSync] ZLIB " + c.codec.stats());
+        System.out.println("[InputSync] QOS " + c.scheduler.stats());
+        System.out.println("[InputSync] DISCONNECTED (lastSeq=" + lastSeq + ")");
+    }
+
+    /** WELCOME_<version>_<caps>: the relay settled on the common subset of our HELLO caps. */
+    private void onWelcome(String msg) {
+        Connection c = conn;
+        if (c == null) return;
+        String[] p = msg.split("_", 3);
+        c.protocol = Math.min(Protocol.VERSION, safeParseInt(p.length > 1 ? p[1] : "", 1));
+        c.caps = Protocol.parse(p.length > 2 ? p[2] : "") & Protocol.SUPPORTED;
+        c.probe = Protocol.has(c.caps, Protocol.PING);
+        System.out.println("[InputSync] WELCOME protocol " + c.protocol + " caps [" + Protocol.format(c.caps) + "]");
+
+        if (Protocol.has(c.caps, Protocol.ZLIB)) {
+            c.codec.inflateAfter("ZLIB_OK");
+            c.send("ZLIB_REQ");
+        }
+    }
+
+    /** MCAST_<group>_<port>_<tag>: the relay also sends MOVE_ to this multicast group. */
+    private void onMcast(String msg) {
+        Connection c = conn;
+        String[] p = msg.split("_");
+        if (c == null || p.length < 4 || !Protocol.has(c.caps, Protocol.MCAST)) return;
+        int port = safeParseInt(p[2], -1);
+        if (port <= 0) return;
+        c.joinMulticast(p[1], port, p[3], options.multicastIf);
+    }
+
+    /** IO thread: captured lines to the scheduler, unless a takeover claim is still pending. */
+    private void drain(Connection c) {
+        if (discardClaim) {
+            discardClaim = false;
+            out.clear();
+        }
+        if (provisional) return;
+        out.drain(line -> c.scheduler.offer(line, false));
+    }
+
+    /** TAKEOVER_OK_<epoch>_<claim> / TAKEOVER_NO_<epoch>_<claim>: the relay's answer to FOCUS_1_<claim>. */
+    private void onTakeover(String msg) {
+        String[] p = msg.split("_");
+        if (p.length < 4) return;
+        long e = safeParseLong(p[2], -1L);
+        if (e > epoch) epoch = e;
+        if (++claimsAnswered != claimsSent || !provisional) return; // an older claim, or unfocused since
+
+        long held = out.lines() - claimLines;
+        if ("OK".equals(p[1])) {
+            leader = true;
+            provisional = false;
+            takeoversConfirmed++;
+            System.out.println("[InputSync] TAKEOVER confirmed, epoch " + e + ", flushing " + held + " lines");
+            requestFlush();
+        } else {
+            provisional = false;
+            out.clear();
+            takeoversRejected++;
+            System.out.println("[InputSync] TAKEOVER rejected, epoch " + e + ", discarded " + held + " lines");
+            adapter.onRole(false, true);
+        }
+    }
+
+    private boolean wantsCompression(Connection c) {
+        if ("off".equals(options.compress)) return false;
+        if ("on".equals(options.compress)) return true;
+        InetAddress a = c.remoteAddress();
+        return a != null && !a.isLoopbackAddress() && !a.isAnyLocalAddress();
+    }
+
+    private void handleIncoming(String msg) {
+        if (msg.isEmpty()) return;
+        SyncEvents.Receive ev = SyncEvents.receive();
+        try {
+            // Reliable events are wrapped as SEQ_<n>_<payload> once the relay knows our session
+            if (msg.startsWith("SEQ_")) {
+                int sep = msg.indexOf('_', "SEQ_".length());
+                if (sep < 0) return;
+                long seq = safeParseLong(msg.substring("SEQ_".length(), sep), -1L);
+                if (seq <= lastSeq) return; // already applied before the reconnect
+                if (seq != lastSeq + 1) {
+                    SyncLog.info("seq.gap", "SEQ gap", "expected", lastSeq + 1, "got", seq);
+                }
+                lastSeq = seq;
+                handleMessage(msg.substring(sep + 1));
+                return;
+            }
+            handleMessage(msg);
+        } finally {
+            SyncEvents.end(ev, msg);
+        }
+    }
+
+    private void handleMessage(String msg) {
+        MessageType type = MessageType.of(msg);
+        SyncStats.received(type);
+
+        if ("SESSION_NEW".equals(msg)) {
+            // Relay has no history for us (first connect or relay restart): start counting afresh
+            lastSeq = 0L;
+            System.out.println("[InputSync] SESSION new " + options.sessionId);
+            return;
+        }
+        if (msg.startsWith("WELCOME_")) {
+            onWelcome(msg);
+            return;
+        }
+        if ("ZLIB_OK".equals(msg)) {
+            // Our inbound is already inflating; ZLIB_ON is our last plain line
+            Connection c = conn;
+            if (c != null) c.sendThenDeflate("ZLIB_ON");
+            System.out.println("[InputSync] ZLIB enabled");
+            return;
+        }
+        if (msg.startsWith("MCAST_")) {
+            onMcast(msg);
+            return;
+        }
+        if (msg.startsWith("SESSION_RESUMED_")) {
+            System.out.println("[InputSync] SESSION resumed, replayed " + msg.substring("SESSION_RESUMED_".length()));
+            return;
+        }
+
+        if (msg.startsWith("EPOCH_")) {
+            long e = safeParseLong(msg.substring("EPOCH_".length()), -1L);
+            if (e > epoch) epoch = e;
+            return;
+        }
+        if (msg.startsWith("TAKEOVER_")) {
+            onTakeover(msg);
+            return;
+        }
+
+        if ("ROLE_LEADER".equals(msg)) {
+            boolean changed = !leader && !provisional; // a pending claim already started leading
+            leader = true;
+            adapter.onRole(true, changed);
+            System.out.println("[InputSync] ROLE=LEADER");
+            return;
+        }
+        if ("ROLE_FOLLOWER".equals(msg)) {
+            boolean changed = leader;
+            leader = false;
+            adapter.onRole(false, changed);
+            System.out.println("[InputSync] ROLE=FOLLOWER");
+            return;
+        }
+
+        if ("PAUSE".equals(msg)) { setEnabled(false); return; }
+        if ("RESUME".equals(msg)) { setEnabled(true); return; }
+        if ("TOGGLE_SYNC".equals(msg)) { toggle(); return; }
+        if ("DUMP_METRICS".equals(msg)) { adapter.onDumpMetrics(); return; }
+
+        if (type == MessageType.CONTROL) return;
+
+        if (!enabled || leader || provisional) {
+            SyncStats.dropped(type);
+            return;
+        }
+
+        if (type == MessageType.MOVE) {
+            MoveState st = MoveState.parse(msg);
+            if (st == null || lastMoveFresh) SyncStats.dropped(type); // unparsable, or superseded before a tick applied it
+            if (st == null) return;
+            lastMove = st;
+            lastMoveFresh = true;
+            SyncStats.moveReceived();
+            adapter.onMove(st);
+            return;
+        }
+
+        if (!adapter.onEvent(type, msg)) SyncStats.dropped(type);
+    }
+
+    /* ========================================================= */
+    /* ===================== REPORT ============================ */
+    /* ========================================================= */
+
+    /** Header lines for the metrics overlay/dump. */
+    public List<String> describe() {
+        Connection c = conn;
+        List<String> lines = new ArrayList<>();
+        lines.add("InputSync " + (c == null ? "DISCONNECTED" : c.state.name())
+                + "  " + (leader ? "LEADER" : "FOLLOWER")
+                + (enabled ? "" : " (paused)")
+                + (provisional ? " (claiming epoch " + claimEpoch + ")" : "")
+                + "  session " + options.sessionId + " seq " + lastSeq);
+        if (c != null) {
+            lines.add("protocol " + c.protocol + " caps [" + Protocol.format(c.caps) + "]");
+            if (c.codec.isCompressed()) lines.add("zlib " + c.codec.stats());
+            if (Protocol.has(c.caps, Protocol.TAKEOVER)) {
+                lines.add("takeover epoch " + epoch + " confirmed " + takeoversConfirmed + " rejected " + takeoversRejected);
+            }
+            lines.add("qos " + c.scheduler.stats());
+            McastReceiver m = c.mcast;
+            if (m != null) lines.add("mcast " + m.stats());
+        }
+        if (out.dropped() > 0) lines.add("capture ring full, dropped " + out.dropped());
+        if (AllocCheck.ENABLED) lines.add("allocCheck " + AllocCheck.describe());
+        lines.add(SyncLog.describe());
+        return lines;
+    }
+
+    private static int safeParseInt(String s, int def) {
+        try { return Integer.parseInt(s.trim()); } catch (Throwable ignored) { return def; }
+    }
+
+    private static long safeParseLong(String s, long def) {
+        try { return Long.parseLong(s.trim()); } catch (Throwable ignored) { return def; }
+    }
+}
@@ -0,0 +1,203 @@
+package net.synchole.inputsync.core;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * JDK Flight Recorder events for each stage of the sync pipeline, so sync cost lines up with GC,
+ * safepoints and frame time in one recording (category "InputSync").
+ *
+ *   Capture  leader input encoded into the capture ring    render thread
+ *   Send     one line encoded and written to the socket    IO thread
+ *   Read     one socket read, decoded into lines           IO thread
+ *   Receive  one line parsed and dispatched                IO thread
+ *   Apply    one leader event applied to this client       render thread
+ *
+ * Call sites bracket the work with {@code xxx()} / {@code end(...)} like AllocCheck. While no
+ * recording has an event enabled, {@code xxx()} returns null and {@code end} does nothing: a
+ * volatile read, no allocation. -Dinputsync.jfr=off removes even that.
+ */
+public final class SyncEvents {
+
+    public static final boolean ENABLED = !"off".equalsIgnoreCase(System.getProperty("inputsync.jfr", "on"));
+
+    @Name("net.synchole.inputsync.Capture")
+    @Label("Capture")
+    @Category("InputSync")
+    @Description("Leader input encoded into the capture ring")
+    @StackTrace(false)
+    public static final class Capture extends Event {
+        @Label("Source") String source;
+        @Label("Lines") int lines;
+        @Label("Size") @DataAmount long bytes;
+        transient long markBytes, markLines;
+    }
+
+    @Name("net.synchole.inputsync.Send")
+    @Label("Send")
+    @Category("InputSync")
+    @Description("One outbound line encoded and handed to the socket")
+    @StackTrace(false)
+    public static final class Send extends Event {
+        @Label("Type") String type;
+        @Label("Line Size") @DataAmount int lineBytes;
+        @Label("Wire Size") @DataAmount int wireBytes;
+        @Label("Socket Full") boolean socketFull;
+    }
+
+    @Name("net.synchole.inputsync.Read")
+    @Label("Read")
+    @Category("InputSync")
+    @Description("One socket read, decoded and dispatched")
+    @StackTrace(false)
+    public static final class Read extends Event {
+        @Label("Wire Size") @DataAmount int wireBytes;
+        @Label("Lines") int lines;
+    }
+
+    @Name("net.synchole.inputsync.Receive")
+    @Label("Receive")
+    @Category("InputSync")
+    @Description("One inbound line parsed and dispatched")
+    @StackTrace(false)
+    public static final class Receive extends Event {
+        @Label("Type") String type;
+        @Label("Size") @DataAmount int bytes;
+    }
+
+    @Name("net.synchole.inputsync.Apply")
+    @Label("Apply")
+    @Category("InputSync")
+    @Description("One leader event applied on the render thread")
+    @StackTrace(false)
+    public static final class Apply extends Event {
+        @Label("Type") String type;
+        @Label("Queued") @Description("Time between receive and the render thread picking it up") @Timespan long queued;
+    }
+
+    private static final EventType CAPTURE = type(Capture.class);
+    private static final EventType SEND = type(Send.class);
+    private static final EventType READ = type(Read.class);
+    private static final EventType RECEIVE = type(Receive.class);
+    private static final EventType APPLY = type(Apply.class);
+
+    private SyncEvents() {}
+
+    private static EventType type(Class<? extends Event> c) {
+        if (!ENABLED) return null;
+        try {
+            return EventType.getEventType(c);
+        } catch (Throwable t) {
+            System.out.println("[InputSync] JFR events unavailable: " + t);
+            return null;
+        }
+    }
+
+    private static boolean on(EventType t) {
+        return t != null && t.isEnabled();
+    }
+
+    /* ===================== CAPTURE (render thread) ===================== */
+
+    public static Capture capture(CaptureRing out) {
+        if (!on(CAPTURE)) return null;
+        Capture e = new Capture();
+        e.markBytes = out.written();
+        e.markLines = out.lines();
+        e.begin();
+        return e;
+    }
+
+    /** @param source a constant label */
+    public static void end(Capture e, CaptureRing out, String source) {
+        if (e == null) return;
+        e.end();
+        e.lines = (int) (out.lines() - e.markLines);
+        if (e.lines == 0 || !e.shouldCommit()) return; // nothing captured: not worth a record
+        e.source = source;
+        e.bytes = out.written() - e.markBytes;
+        e.commit();
+    }
+
+    /* ===================== SEND / READ / RECEIVE (IO thread) ===================== */
+
+    static Send send() {
+        if (!on(SEND)) return null;
+        Send e = new Send();
+        e.begin();
+        return e;
+    }
+
+    static void end(Send e, String line, int wireBytes, boolean socketFull) {
+        if (e == null) return;
+        e.end();
+        if (!e.shouldCommit()) return;
+        e.type = MessageType.of(line).name();
+        e.lineBytes = WireCodec.rawLength(line);
+        e.wireBytes = wireBytes;
+        e.socketFull = socketFull;
+        e.commit();
+    }
+
+    static Read read() {
+        if (!on(READ)) return null;
+        Read e = new Read();
+        e.begin();
+        return e;
+    }
+
+    static void end(Read e, int wireBytes, int lines) {
+        if (e == null) return;
+        e.end();
+        if (!e.shouldCommit()) return;
+        e.wireBytes = wireBytes;
+        e.lines = lines;
+        e.commit();
+    }
+
+    static Receive receive() {
+        if (!on(RECEIVE)) return null;
+        Receive e = new Receive();
+        e.begin();
+        return e;
+    }
+
+    static void end(Receive e, String line) {
+        if (e == null) return;
+        e.end();
+        if (!e.shouldCommit()) return;
+        e.type = MessageType.of(line).name();
+        e.bytes = WireCodec.rawLength(line);
+        e.commit();
+    }
+
+    /* ===================== APPLY (render thread) ===================== */
+
+    public static boolean applyEnabled() {
+        return on(APPLY);
+    }
+
+    /** @param receivedAt System.nanoTime() when the IO thread queued it, 0 if not queued */
+    public static Apply apply(long receivedAt) {
+        if (!on(APPLY)) return null;
+        Apply e = new Apply();
+        if (receivedAt != 0L) e.queued = System.nanoTime() - receivedAt;
+        e.begin();
+        return e;
+    }
+
+    public static void end(Apply e, MessageType type) {
+        if (e == null) return;
+        e.end();
+        if (!e.shouldCommit()) return;
+        e.type = type.name();
+        e.commit();
+    }
+}
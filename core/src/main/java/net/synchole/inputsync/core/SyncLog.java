@@ -0,0 +1,203 @@
+package net.synchole.inputsync.core;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Asynchronous, rate-limited log for paths that run on the render/tick thread.
+ *
+ * Callers never format or print: they hand a constant key, a Throwable and up to three key/value
+ * fields to a bounded lock-free ring (multi-producer CAS on {@code tail}), and the InputSync-Log
+ * thread formats and prints them. A full ring drops the entry and counts it; nothing ever blocks.
+ *
+ * Each key may log {@code BURST} entries per {@code WINDOW_MS}; the rest are counted and reported
+ * once per window as "<key>: N more suppressed", so a state that fails every tick costs a map
+ * lookup and a counter, not a console write.
+ *
+ * Config (system properties):
+ *   inputsync.log.burst    = entries per key per window (default 5)
+ *   inputsync.log.windowMs = rate limit window (default 10000)
+ */
+public final class SyncLog {
+
+    private static final int BURST = Integer.getInteger("inputsync.log.burst", 5);
+    private static final long WINDOW_MS = Long.getLong("inputsync.log.windowMs", 10_000L);
+
+    private static final int CAPACITY = 1024;
+    private static final long DRAIN_MS = 25L;
+
+    private static final AtomicReferenceArray<Entry> RING = new AtomicReferenceArray<>(CAPACITY);
+    private static final AtomicLong TAIL = new AtomicLong();
+    /** Log thread only (read by producers for the full check) */
+    private static volatile long head = 0L;
+
+    private static final Map<String, Limit> LIMITS = new ConcurrentHashMap<>();
+    private static final AtomicLong DROPPED = new AtomicLong();
+
+    static {
+        Thread t = new Thread(SyncLog::loop, "InputSync-Log");
+        t.setDaemon(true);
+        t.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(SyncLog::drain, "InputSync-Log-Flush"));
+    }
+
+    private SyncLog() {}
+
+    private static final class Entry {
+        final String key;
+        final String text;
+        final Throwable error;
+        final Object[] fields;
+        final List<String> block;
+
+        Entry(String key, String text, Throwable error, Object[] fields, List<String> block) {
+            this.key = key;
+            this.text = text;
+            this.error = error;
+            this.fields = fields;
+            this.block = block;
+        }
+    }
+
+    private static final class Limit {
+        final AtomicLong windowStart = new AtomicLong();
+        final AtomicInteger inWindow = new AtomicInteger();
+        final AtomicLong suppressed = new AtomicLong();
+        /** Log thread only */
+        long reportedAt = System.currentTimeMillis();
+    }
+
+    /* ===================== PRODUCERS (any thread) ===================== */
+
+    // Fixed arity up to three fields, no varargs: the field array is only built once the entry
+    // has passed the rate limit, so a suppressed call allocates nothing of ours.
+
+    /** "[InputSync] <text> k=v ..." */
+    public static void info(String key, String text) {
+        if (allow(key)) offer(new Entry(key, text, null, null, null));
+    }
+
+    public static void info(String key, String text, String k1, Object v1) {
+        if (allow(key)) offer(new Entry(key, text, null, new Object[] {k1, v1}, null));
+    }
+
+    public static void info(String key, String text, String k1, Object v1, String k2, Object v2) {
+        if (allow(key)) offer(new Entry(key, text, null, new Object[] {k1, v1, k2, v2}, null));
+    }
+
+    public static void info(String key, String text, String k1, Object v1, String k2, Object v2, String k3, Object v3) {
+        if (allow(key)) offer(new Entry(key, text, null, new Object[] {k1, v1, k2, v2, k3, v3}, null));
+    }
+
+    /** "[InputSync] <key> failed: <error> k=v ..." */
+    public static void failed(String key, Throwable error) {
+        if (allow(key)) offer(new Entry(key, key + " failed", error, null, null));
+    }
+
+    public static void failed(String key, Throwable error, String k1, Object v1) {
+        if (allow(key)) offer(new Entry(key, key + " failed", error, new Object[] {k1, v1}, null));
+    }
+
+    public static void failed(String key, Throwable error, String k1, Object v1, String k2, Object v2) {
+        if (allow(key)) offer(new Entry(key, key + " failed", error, new Object[] {k1, v1, k2, v2}, null));
+    }
+
+    public static void failed(String key, Throwable error, String k1, Object v1, String k2, Object v2, String k3, Object v3) {
+        if (allow(key)) offer(new Entry(key, key + " failed", error, new Object[] {k1, v1, k2, v2, k3, v3}, null));
+    }
+
+    /** Multi-line diagnostic block, printed unbroken. */
+    public static void block(String key, List<String> lines) {
+        if (allow(key)) offer(new Entry(key, null, null, null, lines));
+    }
+
+    private static boolean allow(String key) {
+        Limit l = LIMITS.computeIfAbsent(key, k -> new Limit());
+        long now = System.currentTimeMillis();
+        long start = l.windowStart.get();
+        if (now - start >= WINDOW_MS && l.windowStart.compareAndSet(start, now)) l.inWindow.set(0);
+        if (l.inWindow.incrementAndGet() <= BURST) return true;
+        l.suppressed.incrementAndGet();
+        return false;
+    }
+
+    private static void offer(Entry e) {
+        long t;
+        do {
+            t = TAIL.get();
+            if (t - head >= CAPACITY) {
+                DROPPED.incrementAndGet();
+                return;
+            }
+        } while (!TAIL.compareAndSet(t, t + 1));
+        RING.lazySet((int) (t & (CAPACITY - 1)), e);
+    }
+
+    /* ===================== LOG THREAD ===================== */
+
+    private static void loop() {
+        while (true) {
+            try {
+                Thread.sleep(DRAIN_MS);
+                drain();
+            } catch (InterruptedException e) {
+                return;
+            } catch (Throwable ignored) {}
+        }
+    }
+
+    private static synchronized void drain() {
+        long h = head;
+        while (h < TAIL.get()) {
+            int i = (int) (h & (CAPACITY - 1));
+            Entry e = RING.get(i);
+            if (e == null) break; // slot claimed, not yet written
+            RING.set(i, null);
+            head = ++h;
+            print(e);
+        }
+        summarize();
+    }
+
+    private static void print(Entry e) {
+        if (e.block != null) {
+            StringBuilder sb = new StringBuilder();
+            for (String line : e.block) sb.append(line).append('\n');
+            System.out.print(sb);
+            return;
+        }
+        StringBuilder sb = new StringBuilder("[InputSync] ").append(e.text);
+        if (e.error != null) sb.append(": ").append(e.error);
+        Object[] f = e.fields;
+        if (f != null) {
+            for (int i = 0; i + 1 < f.length; i += 2) sb.append(' ').append(f[i]).append('=').append(f[i + 1]);
+        }
+        System.out.println(sb);
+    }
+
+    private static void summarize() {
+        long now = System.currentTimeMillis();
+        for (Map.Entry<String, Limit> me : LIMITS.entrySet()) {
+            Limit l = me.getValue();
+            if (now - l.reportedAt < WINDOW_MS) continue;
+            l.reportedAt = now;
+            long n = l.suppressed.getAndSet(0L);
+            if (n > 0) System.out.println(String.format(Locale.ROOT, "[InputSync] %s: %d more suppressed in the last %ds",
+                    me.getKey(), n, WINDOW_MS / 1000L));
+        }
+        long d = DROPPED.getAndSet(0L);
+        if (d > 0) System.out.println("[InputSync] log ring full, dropped " + d);
+    }
+
+    /** Overlay line: suppressed entries pending their summary. */
+    public static String describe() {
+        long s = 0;
+        for (Limit l : LIMITS.values()) s += l.suppressed.get();
+        return "log queued " + (TAIL.get() - head) + " suppressed " + s;
+    }
+}
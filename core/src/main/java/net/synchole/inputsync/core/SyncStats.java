@@ -0,0 +1,63 @@
+package net.synchole.inputsync.core;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Sync counters: messages sent/received/applied/dropped per type, and when the current leader
+ * MOVE arrived. Process-wide (the mod runs one client; headless runs sum all their clients).
+ * Lock-free, any thread.
+ */
+public final class SyncStats {
+
+    private static final MessageType[] TYPES = MessageType.values();
+    private static final int SENT = 0, RECEIVED = 1, APPLIED = 2, DROPPED = 3;
+    private static final String[] COLUMNS = {"tx", "rx", "apply", "drop"};
+
+    private static final AtomicLongArray COUNTS = new AtomicLongArray(TYPES.length * COLUMNS.length);
+
+    /** When the current lastMove arrived (System.nanoTime), 0 = none */
+    private static volatile long lastMoveAtNanos = 0L;
+
+    private SyncStats() {}
+
+    public static void sent(String msg) { COUNTS.incrementAndGet(MessageType.of(msg).ordinal() * COLUMNS.length + SENT); }
+    public static void sent(MessageType t) { COUNTS.incrementAndGet(t.ordinal() * COLUMNS.length + SENT); }
+    public static void received(MessageType t) { COUNTS.incrementAndGet(t.ordinal() * COLUMNS.length + RECEIVED); }
+    public static void applied(MessageType t) { COUNTS.incrementAndGet(t.ordinal() * COLUMNS.length + APPLIED); }
+    public static void dropped(MessageType t) { COUNTS.incrementAndGet(t.ordinal() * COLUMNS.length + DROPPED); }
+
+    static void moveReceived() { lastMoveAtNanos = System.nanoTime(); }
+
+    /** System.nanoTime() of the current leader MOVE, 0 = none yet */
+    public static long lastMoveAtNanos() {
+        return lastMoveAtNanos;
+    }
+
+    private static long count(MessageType t, int column) {
+        return COUNTS.get(t.ordinal() * COLUMNS.length + column);
+    }
+
+    public static long sentCount(MessageType t) { return count(t, SENT); }
+    public static long receivedCount(MessageType t) { return count(t, RECEIVED); }
+    public static long droppedCount(MessageType t) { return count(t, DROPPED); }
+
+    /** One line per type that has any traffic. */
+    public static List<String> lines() {
+        List<String> out = new ArrayList<>();
+        for (MessageType t : TYPES) {
+            int base = t.ordinal() * COLUMNS.length;
+            long sum = 0;
+            for (int c = 0; c < COLUMNS.length; c++) sum += COUNTS.get(base + c);
+            if (sum == 0) continue;
+            StringBuilder sb = new StringBuilder(String.format(Locale.ROOT, "%-9s", t.name()));
+            for (int c = 0; c < COLUMNS.length; c++) {
+                sb.append(' ').append(COLUMNS[c]).append(' ').append(COUNTS.get(base + c));
+            }
+            out.add(sb.toString());
+        }
+        return out;
+    }
+}
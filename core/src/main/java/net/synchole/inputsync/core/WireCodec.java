@@ -0,0 +1,201 @@
+package net.synchole.inputsync.core;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.function.Consumer;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Per-connection line framing with optional streaming zlib compression.
+ *
+ * Negotiation (client side):
+ *   client -> ZLIB_REQ
+ *   relay  -> ZLIB_OK   (last plain line from the relay, everything after is deflated)
+ *   client -> ZLIB_ON   (last plain line from the client, everything after is deflated)
+ *
+ * Each message is sync-flushed so it can be decoded as soon as it arrives.
+ * Both sides prime the stream with {@link #DICTIONARY}; it MUST match sync.py byte for byte.
+ */
+final class WireCodec {
+
+    /** Preset dictionary: common protocol tokens, most frequent last (closest to the data). */
+    static final byte[] DICTIONARY = (
+            "UI_CHAR_UI_SCROLL_UI_RELEASE_UI_CLICK_OPEN_MENU\nOPEN_CMD\nOPEN_CHAT\nOPEN_INV\n"
+            + "CLOSE_SCREEN\nCHAT_SEND\nCHAT_SET_HBAR_INV_SEQ_FOCUS_1\nFOCUS_0\nROLE_FOLLOWER\nROLE_LEADER\n"
+            + "UI_MOVE_0.0_0.0\nMOVE_0.000000_0.000000_0.000000_0.000000_0_0_0_0_0_0\n"
+            + "MOVE_-0.000000_0.000000_1.000000_-1.000000_1_0_1_0_0_0\nMOVE_"
+    ).getBytes(StandardCharsets.US_ASCII);
+
+    private static final int MAX_LINE = 1 << 20;
+
+    private Deflater deflater;
+    private Inflater inflater;
+    private String inflateAfterLine;
+
+    private byte[] line = new byte[256];
+    private int lineLen = 0;
+
+    private final byte[] zbuf = new byte[8192];
+
+    /** Stats (raw = protocol bytes, wire = bytes on the socket) */
+    private long rawOut, wireOut, deflateNanos;
+    private volatile long rawIn, wireIn, inflateNanos;
+
+    /* ===================== OUTBOUND ===================== */
+
+    /** Raw bytes {@link #encode} frames {@code msg} into: UTF-8 length plus the '\n', without encoding it. */
+    static int rawLength(String msg) {
+        int n = 1;
+        for (int i = 0, len = msg.length(); i < len; i++) {
+            char c = msg.charAt(i);
+            if (c < 0x80) n += 1;
+            else if (c < 0x800) n += 2;
+            else if (Character.isHighSurrogate(c) && i + 1 < len && Character.isLowSurrogate(msg.charAt(i + 1))) {
+                n += 4;
+                i++;
+            } else if (Character.isSurrogate(c)) n += 1; // unpaired: the encoder writes '?'
+            else n += 3;
+        }
+        return n;
+    }
+
+    /** Frames one line (adds '\n') and deflates it if outbound compression is on. */
+    synchronized byte[] encode(String msg) {
+        byte[] raw = (msg + "\n").getBytes(StandardCharsets.UTF_8);
+        rawOut += raw.length;
+        if (deflater == null) {
+            wireOut += raw.length;
+            return raw;
+        }
+
+        long t0 = System.nanoTime();
+        deflater.setInput(raw);
+        byte[] outBuf = new byte[Math.max(64, raw.length + 16)];
+        int n = 0;
+        while (true) {
+            int w = deflater.deflate(outBuf, n, outBuf.length - n, Deflater.SYNC_FLUSH);
+            n += w;
+            if (n < outBuf.length) break;
+            outBuf = Arrays.copyOf(outBuf, outBuf.length * 2);
+        }
+        deflateNanos += System.nanoTime() - t0;
+        wireOut += n;
+        return Arrays.copyOf(outBuf, n);
+    }
+
+    /** Everything encoded after this call is deflated. */
+    synchronized void startDeflate() {
+        if (deflater != null) return;
+        deflater = new Deflater(Deflater.BEST_SPEED);
+        deflater.setDictionary(DICTIONARY);
+    }
+
+    boolean isCompressed() {
+        return deflater != null || inflater != null;
+    }
+
+    /* ===================== INBOUND ====================== */
+
+    /** When this plain line is decoded, every byte after it is inflated. */
+    void inflateAfter(String marker) {
+        this.inflateAfterLine = marker;
+    }
+
+    /** Feeds socket bytes; complete trimmed lines are passed to {@code sink}. */
+    void decode(byte[] b, int off, int len, Consumer<String> sink) throws IOException {
+        wireIn += len;
+        int end = off + len;
+        while (off < end) {
+            if (inflater != null) {
+                inflate(b, off, end - off, sink);
+                return;
+            }
+            int i = off;
+            while (i < end && b[i] != '\n') i++;
+            append(b, off, i - off);
+            if (i == end) return;
+            off = i + 1;
+            String msg = takeLine();
+            if (inflateAfterLine != null && inflateAfterLine.equals(msg)) {
+                inflateAfterLine = null;
+                inflater = new Inflater();
+            }
+            sink.accept(msg);
+        }
+    }
+
+    private void inflate(byte[] b, int off, int len, Consumer<String> sink) throws IOException {
+        long t0 = System.nanoTime();
+        try {
+            inflater.setInput(b, off, len);
+            while (true) {
+                int n = inflater.inflate(zbuf);
+                if (n == 0) {
+                    if (inflater.needsDictionary()) {
+                        inflater.setDictionary(DICTIONARY);
+                        continue;
+                    }
+                    break;
+                }
+                inflateNanos += System.nanoTime() - t0;
+                frame(zbuf, n, sink);
+                t0 = System.nanoTime();
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("corrupt compressed stream", e);
+        }
+        inflateNanos += System.nanoTime() - t0;
+    }
+
+    private void frame(byte[] b, int len, Consumer<String> sink) throws IOException {
+        int off = 0;
+        while (off < len) {
+            int i = off;
+            while (i < len && b[i] != '\n') i++;
+            append(b, off, i - off);
+            if (i == len) return;
+            off = i + 1;
+            sink.accept(takeLine());
+        }
+    }
+
+    private void append(byte[] b, int off, int len) throws IOException {
+        if (len == 0) return;
+        rawIn += len;
+        if (lineLen + len > line.length) {
+            if (lineLen + len > MAX_LINE) throw new IOException("line too long");
+            line = Arrays.copyOf(line, Math.max(line.length * 2, lineLen + len));
+        }
+        System.arraycopy(b, off, line, lineLen, len);
+        lineLen += len;
+    }
+
+    private String takeLine() {
+        rawIn++; // the '\n'
+        String s = new String(line, 0, lineLen, StandardCharsets.UTF_8).trim();
+        lineLen = 0;
+        return s;
+    }
+
+    /* ===================== STATS ======================== */
+
+    synchronized String stats() {
+        return "out " + rawOut + "->" + wireOut + "B (" + ratio(rawOut, wireOut) + ")"
+                + ", in " + rawIn + "<-" + wireIn + "B (" + ratio(rawIn, wireIn) + ")"
+                + ", cpu deflate " + (deflateNanos / 1_000_000L) + "ms inflate " + (inflateNanos / 1_000_000L) + "ms";
+    }
+
+    private static String ratio(long raw, long wire) {
+        if (wire <= 0) return "-";
+        return String.format(Locale.ROOT, "%.2fx", (double) raw / wire);
+    }
+
+    synchronized void close() {
+        if (deflater != null) deflater.end();
+        if (inflater != null) inflater.end();
+    }
+}
@@ -0,0 +1,105 @@
+package net.synchole.inputsync.core;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.lang.management.ManagementFactory;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Allocation regression test for the leader capture path: after a warm-up, encoding every kind
+ * of leader event into a CaptureRing must allocate zero bytes on the capturing thread. The
+ * lines mirror what NetworkClient writes from its GLFW callbacks and tick; the ring is emptied
+ * between rounds outside the measured window (draining is the IO thread's job and allocates).
+ */
+class CaptureAllocationTest {
+
+    private static final int WARMUP_ROUNDS = 2_000;
+    private static final int MEASURED_ROUNDS = 200;
+    private static final int EVENTS_PER_ROUND = 500;
+
+    private com.sun.management.ThreadMXBean mx;
+    private final CaptureRing ring = new CaptureRing(1 << 20);
+    private final int[] invSlots = {0, 12, 36, 44, 7};
+
+    @BeforeEach
+    void enable() {
+        assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean, "no allocation counter");
+        mx = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assumeTrue(mx.isThreadAllocatedMemorySupported(), "allocation counter not supported");
+        mx.setThreadAllocatedMemoryEnabled(true);
+        ClickStream.reset();
+    }
+
+    @AfterEach
+    void reset() {
+        ClickStream.reset();
+    }
+
+    @Test
+    void steadyStateCaptureAllocatesNothing() {
+        for (int i = 0; i < WARMUP_ROUNDS; i++) round(i);
+
+        long overhead = Long.MAX_VALUE;
+        for (int i = 0; i < 16; i++) {
+            long a = mx.getCurrentThreadAllocatedBytes();
+            overhead = Math.min(overhead, mx.getCurrentThreadAllocatedBytes() - a);
+        }
+
+        long bytes = 0L;
+        long worst = 0L;
+        for (int i = 0; i < MEASURED_ROUNDS; i++) {
+            long start = mx.getCurrentThreadAllocatedBytes();
+            round(WARMUP_ROUNDS + i);
+            long d = mx.getCurrentThreadAllocatedBytes() - start - overhead;
+            bytes += d;
+            worst = Math.max(worst, d);
+        }
+        assertEquals(0L, bytes, "allocated over " + MEASURED_ROUNDS * EVENTS_PER_ROUND
+                + " capture events (worst round " + worst + "B)");
+    }
+
+    /** One burst of leader events, then the ring is emptied without draining. */
+    private void round(int r) {
+        for (int i = 0; i < EVENTS_PER_ROUND; i++) {
+            SyncEvents.Capture ev = SyncEvents.capture(ring);
+            capture(r, i);
+            SyncEvents.end(ev, ring, "test");
+        }
+        ring.clear();
+    }
+
+    private void capture(int r, int i) {
+        double x = (r * 31 + i) * 0.37;
+        double y = -(r + i * 17) * 1.13;
+        switch (i % 8) {
+            case 0 -> MoveState.encode(ring, (float) x, (float) y, 1.0f, -1.0f,
+                    (i & 1) != 0, false, true, (i & 2) != 0, false, i % 9, true);
+            case 1 -> ring.begin().put("UI_MOVE_").putFixed(x, 2).put('_').putFixed(y, 2).commit();
+            case 2 -> ring.begin().put((i & 16) != 0 ? "UI_CLICK_" : "UI_RELEASE_").putInt(i & 1)
+                    .put('_').putFixed(x, 2).put('_').putFixed(y, 2).put('_').putInt(i & 7).commit();
+            case 3 -> ring.begin().put("UI_SCROLL_").putFixed(x, 2).put('_').putFixed(y, 2)
+                    .put('_').putFixed(0.0, 3).put('_').putFixed(-1.0, 3).commit();
+            case 4 -> ring.begin().put("HBAR_").putInt(i % 9).commit();
+            case 5 -> {
+                ring.begin().put("INVB_").putInt(r).put('_');
+                for (int k = 0; k < invSlots.length; k++) {
+                    if (k > 0) ring.put(',');
+                    ring.putInt(invSlots[k]).put(':').putInt(k & 1).put(':').putInt(0);
+                }
+                ring.commit();
+            }
+            case 6 -> ring.begin().put("UI_CHAR_").putInt(0x20 + i % 90).put('_').putInt(i & 3).commit();
+            default -> {
+                ClickStream.record(ClickStream.BUTTON_LEFT, ClickStream.PRESS, true);
+                ClickStream.record(ClickStream.BUTTON_RIGHT, ClickStream.PRESS, true);
+                ClickStream.record(ClickStream.BUTTON_LEFT, ClickStream.RELEASE, true);
+                ClickStream.record(ClickStream.BUTTON_RIGHT, ClickStream.RELEASE, true);
+                ClickStream.captureInto(ring);
+            }
+        }
+    }
+}
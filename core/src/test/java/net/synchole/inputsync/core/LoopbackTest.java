@@ -0,0 +1,139 @@
+package net.synchole.inputsync.core;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * What LoopbackBench measures, with pass/fail bounds: a leader and followers over a
+ * {@link LoopbackRelay}. Reliable events must all arrive, in order; MOVE_ may be coalesced, but
+ * the newest state must reach every follower.
+ */
+class LoopbackTest {
+
+    private static final int FOLLOWERS = 3;
+    private static final int EVENTS = 20_000;
+    private static final long DELIVERY_SECONDS = 30L;
+    private static final long MOVE_SECONDS = 5L;
+
+    private LoopbackRelay relay;
+    private SyncClient leader;
+    private final List<Follower> followers = new ArrayList<>();
+
+    @BeforeEach
+    void connect() throws Exception {
+        relay = new LoopbackRelay();
+        relay.start();
+        CountDownLatch ready = new CountDownLatch(FOLLOWERS + 1);
+
+        leader = client(new Follower(ready)); // the relay makes the first HELLO the leader
+        leader.start();
+        long until = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!leader.isLeader()) {
+            assertTrue(System.nanoTime() < until, "leader was not elected");
+            Thread.sleep(5);
+        }
+        for (int i = 0; i < FOLLOWERS; i++) {
+            Follower f = new Follower(ready);
+            followers.add(f);
+            client(f).start();
+        }
+        assertTrue(ready.await(10, TimeUnit.SECONDS), "clients did not connect");
+    }
+
+    @AfterEach
+    void close() {
+        relay.close();
+    }
+
+    @Test
+    void everyHbarArrivesInOrder() throws Exception {
+        CaptureRing out = leader.out();
+        for (int i = 0; i < EVENTS; i++) {
+            while (!out.begin().put("HBAR_").putInt(i).commit()) {
+                leader.requestFlush();
+                Thread.onSpinWait();
+            }
+            leader.published(MessageType.HBAR);
+        }
+
+        for (Follower f : followers) {
+            assertTrue(f.done.await(DELIVERY_SECONDS, TimeUnit.SECONDS),
+                    "delivered " + f.hbars + "/" + EVENTS + " within " + DELIVERY_SECONDS + "s");
+            assertEquals(EVENTS, f.hbars);
+            assertEquals(-1, f.outOfOrder, "first HBAR out of order");
+        }
+    }
+
+    @Test
+    void newestMoveReachesEveryFollower() throws Exception {
+        CaptureRing out = leader.out();
+        for (int i = 1; i <= 2_000; i++) {
+            while (!MoveState.encode(out, i, 0.0f, 1.0f, 0.0f, false, false, false, false, false, 0, false)) {
+                leader.requestFlush();
+                Thread.onSpinWait();
+            }
+            leader.published(MessageType.MOVE);
+        }
+
+        long until = System.nanoTime() + TimeUnit.SECONDS.toNanos(MOVE_SECONDS);
+        for (Follower f : followers) {
+            while (f.lastYaw != 2_000.0f && System.nanoTime() < until) Thread.sleep(5);
+            assertEquals(2_000.0f, f.lastYaw, "newest MOVE_ within " + MOVE_SECONDS + "s");
+            assertTrue(f.movesBackwards == 0, "MOVE_ went backwards " + f.movesBackwards + " times");
+        }
+    }
+
+    private SyncClient client(GameAdapter adapter) {
+        SyncClient.Options o = new SyncClient.Options();
+        o.relays = List.of(InetSocketAddress.createUnresolved("127.0.0.1", relay.port()));
+        o.compress = "off";
+        o.multicast = false;
+        return new SyncClient(o, adapter);
+    }
+
+    /** IO thread writes, the test thread reads after the latch or by polling the volatiles. */
+    private static final class Follower implements GameAdapter {
+        private final CountDownLatch ready;
+        private final CountDownLatch done = new CountDownLatch(1);
+        private boolean roled = false;
+        private volatile int hbars = 0;
+        private volatile int outOfOrder = -1;
+        private volatile float lastYaw = 0.0f;
+        private volatile int movesBackwards = 0;
+
+        Follower(CountDownLatch ready) {
+            this.ready = ready;
+        }
+
+        @Override
+        public void onRole(boolean leader, boolean changed) {
+            if (!roled) ready.countDown();
+            roled = true;
+        }
+
+        @Override
+        public void onMove(MoveState move) {
+            if (move.yaw < lastYaw) movesBackwards++;
+            lastYaw = move.yaw;
+        }
+
+        @Override
+        public boolean onEvent(MessageType type, String msg) {
+            if (type != MessageType.HBAR) return false;
+            int n = Integer.parseInt(msg.substring("HBAR_".length()));
+            if (n != hbars && outOfOrder < 0) outOfOrder = hbars;
+            if (++hbars == EVENTS) done.countDown();
+            return true;
+        }
+    }
+}
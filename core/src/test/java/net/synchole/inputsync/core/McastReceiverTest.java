@@ -0,0 +1,114 @@
+package net.synchole.inputsync.core;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.NetworkInterface;
+import java.net.StandardProtocolFamily;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * The LAN multicast side channel over loopback multicast on one machine: the relay's datagram
+ * format (<tag>_<seq>_<frame>\n) sent to a 239.x group on the loopback interface. Skipped when
+ * the host has no multicast route there.
+ */
+class McastReceiverTest {
+
+    private static final String GROUP = "239.255.77.41";
+    private static final String TAG = "t1";
+    private static final long WAIT_MS = 2_000L;
+
+    private DatagramChannel sender;
+    private McastReceiver receiver;
+    private InetSocketAddress target;
+    private final List<String> frames = new ArrayList<>();
+
+    @BeforeEach
+    void join() throws IOException {
+        InetAddress lo = InetAddress.getByName("127.0.0.1");
+        NetworkInterface nif = NetworkInterface.getByInetAddress(lo);
+        assumeTrue(nif != null, "no loopback interface");
+
+        int port;
+        try (DatagramChannel probe = DatagramChannel.open(StandardProtocolFamily.INET)) {
+            probe.bind(new InetSocketAddress(lo, 0));
+            port = ((InetSocketAddress) probe.getLocalAddress()).getPort();
+        }
+        target = new InetSocketAddress(GROUP, port);
+        try {
+            receiver = McastReceiver.join(GROUP, port, TAG, null, lo);
+            sender = DatagramChannel.open(StandardProtocolFamily.INET);
+            sender.setOption(StandardSocketOptions.IP_MULTICAST_IF, nif);
+            sender.setOption(StandardSocketOptions.IP_MULTICAST_LOOP, true);
+            sender.setOption(StandardSocketOptions.IP_MULTICAST_TTL, 0);
+            send(0, "MCAST_HB");
+        } catch (IOException e) {
+            assumeTrue(false, "no multicast on loopback: " + e);
+        }
+        assumeTrue(await(() -> receiver.heard()), "no multicast route on loopback");
+    }
+
+    @AfterEach
+    void leave() throws IOException {
+        if (receiver != null) receiver.close();
+        if (sender != null) sender.close();
+    }
+
+    @Test
+    void framesInOrderAndGapCounted() throws IOException {
+        // seq 3 is never sent; seq 2 arrives again after 4 (duplicate/reordered)
+        send(1, move(1));
+        send(2, move(2));
+        send(4, move(4));
+        send(2, move(2));
+        send(5, move(5));
+        datagram("other_6_" + move(6)); // another relay sharing the group
+
+        assertTrue(await(() -> frames.size() >= 4), "received " + frames);
+        assertEquals(List.of(move(1), move(2), move(4), move(5)), frames);
+        assertEquals(1L, receiver.lost(), "seq 3 reported as a gap");
+        assertEquals(1L, receiver.stale());
+    }
+
+    private static String move(int k) {
+        return "MOVE_" + k + ".000000_0.000000_1.000000_0.000000_0_0_1_0_0_0";
+    }
+
+    private void send(long seq, String frame) throws IOException {
+        datagram(TAG + "_" + seq + "_" + frame);
+    }
+
+    private void datagram(String d) throws IOException {
+        sender.send(ByteBuffer.wrap((d + "\n").getBytes(StandardCharsets.UTF_8)), target);
+    }
+
+    /** Reads the (non-blocking) receiver until cond holds or WAIT_MS passes. */
+    private boolean await(BooleanSupplier cond) throws IOException {
+        long until = System.currentTimeMillis() + WAIT_MS;
+        while (true) {
+            assertTrue(receiver.read(frames::add), "receiver gave up on loss");
+            if (cond.getAsBoolean()) return true;
+            if (System.currentTimeMillis() >= until) return false;
+            try {
+                Thread.sleep(5);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package net.synchole.inputsync.core;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import org.junit.jupiter.api.Test;
+
+class MoveStateTest {
+
+    private static final MoveState[] STATES = {
+            new MoveState(0.0f, 0.0f, 0.0f, 0.0f, false, false, false, false, false, 0, false),
+            new MoveState(123.456f, -45.5f, 1.0f, -1.0f, true, false, true, false, true, 8, false),
+            new MoveState(-179.99f, 90.0f, -1.0f, 1.0f, false, true, false, true, false, 3, true),
+            new MoveState(3599.125f, -0.25f, 0.5f, 0.0f, true, true, true, true, true, 5, true),
+    };
+
+    private static List<String> drain(CaptureRing ring) {
+        List<String> lines = new ArrayList<>();
+        ring.drain(lines::add);
+        return lines;
+    }
+
+    @Test
+    void encodeMatchesFormat() {
+        CaptureRing ring = new CaptureRing(4096);
+        for (MoveState s : STATES) assertTrue(s.encode(ring));
+        List<String> lines = drain(ring);
+
+        assertEquals(STATES.length, lines.size());
+        for (int i = 0; i < STATES.length; i++) {
+            MoveState s = STATES[i];
+            String expected = String.format(Locale.ROOT, "MOVE_%f_%f_%f_%f_%d_%d_%d_%d_%d_%d",
+                    s.yaw, s.pitch, s.forward, s.strafe,
+                    s.jump ? 1 : 0, s.sneak ? 1 : 0, s.sprint ? 1 : 0, s.attackHeld ? 1 : 0, s.useHeld ? 1 : 0,
+                    s.hotbar) + (s.clickStream ? "_1" : "");
+            assertEquals(expected, lines.get(i));
+        }
+    }
+
+    @Test
+    void roundTrip() {
+        CaptureRing ring = new CaptureRing(4096);
+        for (MoveState s : STATES) assertTrue(s.encode(ring));
+        List<String> lines = drain(ring);
+
+        for (int i = 0; i < STATES.length; i++) {
+            MoveState in = STATES[i];
+            MoveState out = MoveState.parse(lines.get(i));
+            assertNotNull(out, lines.get(i));
+            assertEquals(in.yaw, out.yaw, 1e-4f);
+            assertEquals(in.pitch, out.pitch, 1e-4f);
+            assertEquals(in.forward, out.forward, 1e-6f);
+            assertEquals(in.strafe, out.strafe, 1e-6f);
+            assertEquals(in.jump, out.jump);
+            assertEquals(in.sneak, out.sneak);
+            assertEquals(in.sprint, out.sprint);
+            assertEquals(in.attackHeld, out.attackHeld);
+            assertEquals(in.useHeld, out.useHeld);
+            assertEquals(in.hotbar, out.hotbar);
+            assertEquals(in.clickStream, out.clickStream);
+        }
+    }
+
+    @Test
+    void parseWithoutClickField() {
+        MoveState s = MoveState.parse("MOVE_1.000000_2.000000_1.000000_0.000000_0_0_1_0_0_4");
+        assertNotNull(s);
+        assertEquals(4, s.hotbar);
+        assertTrue(s.sprint);
+        assertFalse(s.clickStream);
+    }
+
+    @Test
+    void parseRejectsMalformed() {
+        assertNull(MoveState.parse("MOVE_"));
+        assertNull(MoveState.parse("MOVE_1.0_2.0"));
+        assertNull(MoveState.parse("MOVE_a_0_0_0_0_0_0_0_0_0"));
+        assertNull(MoveState.parse("MOVE_0_0_0_0_0_0_0_0_0_x"));
+    }
+
+    @Test
+    void encodeFailsWholeWhenRingIsFull() {
+        CaptureRing ring = new CaptureRing(32);
+        assertFalse(STATES[1].encode(ring)); // longer than the ring
+        assertEquals(1L, ring.dropped());
+        assertTrue(drain(ring).isEmpty());
+    }
+}
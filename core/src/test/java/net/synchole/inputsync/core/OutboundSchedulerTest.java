@@ -0,0 +1,107 @@
+package net.synchole.inputsync.core;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class OutboundSchedulerTest {
+
+    private static List<String> drain(OutboundScheduler q) {
+        List<String> lines = new ArrayList<>();
+        OutboundScheduler.Outbound o;
+        while ((o = q.poll()) != null) lines.add(o.line);
+        assertTrue(q.isEmpty());
+        return lines;
+    }
+
+    private static void offer(OutboundScheduler q, String... lines) {
+        for (String l : lines) q.offer(l, false);
+    }
+
+    @Test
+    void moveKeepsOnlyLatest() {
+        OutboundScheduler q = new OutboundScheduler();
+        offer(q, "MOVE_1", "MOVE_2", "MOVE_3");
+        assertEquals(List.of("MOVE_3"), drain(q));
+        assertNull(q.poll());
+    }
+
+    @Test
+    void reliableAndChatKeepTheirOrder() {
+        OutboundScheduler q = new OutboundScheduler();
+        offer(q, "OPEN_CHAT", "MOVE_1", "CHAT_SET_a", "UI_MOVE_1_1", "CHAT_SEND", "MOVE_2", "HBAR_1", "CLOSE_SCREEN");
+        List<String> ordered = drain(q).stream().filter(l -> !l.startsWith("MOVE_") && !l.startsWith("UI_")).toList();
+        assertEquals(List.of("OPEN_CHAT", "CHAT_SET_a", "CHAT_SEND", "HBAR_1", "CLOSE_SCREEN"), ordered);
+    }
+
+    @Test
+    void chatSetCoalescesOnlyWhenNothingFollowsIt() {
+        OutboundScheduler q = new OutboundScheduler();
+        offer(q, "CHAT_SET_h", "CHAT_SET_hi");
+        assertEquals(List.of("CHAT_SET_hi"), drain(q));
+
+        offer(q, "CHAT_SET_h", "HBAR_2", "CHAT_SET_hi");
+        assertEquals(List.of("CHAT_SET_h", "HBAR_2", "CHAT_SET_hi"), drain(q));
+    }
+
+    @Test
+    void reliableIsNeverDroppedAndMoveEndsOnLatest() {
+        OutboundScheduler q = new OutboundScheduler();
+        List<String> got = new ArrayList<>();
+        for (int i = 0; i < 5_000; i++) {
+            offer(q, "HBAR_" + i, "MOVE_" + i);
+            if (i % 7 == 0) {
+                OutboundScheduler.Outbound o = q.poll();
+                if (o != null) got.add(o.line);
+            }
+        }
+        got.addAll(drain(q));
+
+        List<String> hbars = got.stream().filter(l -> l.startsWith("HBAR_")).toList();
+        assertEquals(5_000, hbars.size());
+        for (int i = 0; i < hbars.size(); i++) assertEquals("HBAR_" + i, hbars.get(i));
+
+        List<String> moves = got.stream().filter(l -> l.startsWith("MOVE_")).toList();
+        assertEquals("MOVE_4999", moves.get(moves.size() - 1));
+        int prev = -1;
+        for (String m : moves) {
+            int k = Integer.parseInt(m.substring(5));
+            assertTrue(k > prev, "MOVE went backwards: " + moves);
+            prev = k;
+        }
+    }
+
+    @Test
+    void moveIsNotStuckBehindReliableBacklog() {
+        OutboundScheduler q = new OutboundScheduler();
+        for (int i = 0; i < 100; i++) offer(q, "HBAR_" + i);
+        offer(q, "MOVE_1");
+        int at = drain(q).indexOf("MOVE_1");
+        assertTrue(at >= 0 && at < 50, "MOVE_ at " + at);
+    }
+
+    @Test
+    void chargesUtf8WireBytes() {
+        WireCodec codec = new WireCodec();
+        for (String l : List.of("HBAR_1", "CHAT_SET_w\u00f6rld", "CHAT_SET_\u4e16\u754c", "CHAT_SET_\ud83d\ude00", "CHAT_SET_\ud83d")) {
+            OutboundScheduler q = new OutboundScheduler();
+            q.offer(l, false);
+            assertEquals(codec.encode(l).length, q.poll().bytes, l);
+        }
+    }
+
+    @Test
+    void uiDropsOldestBeyondCap() {
+        OutboundScheduler q = new OutboundScheduler();
+        for (int i = 0; i < 300; i++) offer(q, "UI_MOVE_" + i + "_0");
+        List<String> got = drain(q);
+        assertEquals(256, got.size());
+        assertEquals("UI_MOVE_44_0", got.get(0));
+        assertEquals("UI_MOVE_299_0", got.get(got.size() - 1));
+    }
+}
@@ -0,0 +1,107 @@
+package net.synchole.inputsync.core;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class WireCodecTest {
+
+    private static final List<String> LINES = List.of(
+            "MOVE_12.500000_-3.000000_1.000000_0.000000_0_0_1_0_0_2",
+            "HBAR_4",
+            "OPEN_INV",
+            "CHAT_SET_hello w\u00f6rld",
+            "MOVE_12.750000_-3.000000_1.000000_0.000000_0_0_1_0_0_2",
+            "",
+            "CLOSE_SCREEN");
+
+    @Test
+    void plainLinesAcrossChunks() throws IOException {
+        WireCodec out = new WireCodec();
+        ByteArrayOutputStream wire = new ByteArrayOutputStream();
+        for (String l : LINES) wire.writeBytes(out.encode(l));
+
+        WireCodec in = new WireCodec();
+        List<String> got = new ArrayList<>();
+        byte[] b = wire.toByteArray();
+        for (int i = 0; i < b.length; i++) in.decode(b, i, 1, got::add);
+        assertEquals(LINES, got);
+    }
+
+    @Test
+    void zlibAfterMarker() throws IOException {
+        WireCodec out = new WireCodec();
+        ByteArrayOutputStream wire = new ByteArrayOutputStream();
+        wire.writeBytes(out.encode("ZLIB_OK"));
+        out.startDeflate();
+        assertTrue(out.isCompressed());
+        for (String l : LINES) wire.writeBytes(out.encode(l));
+
+        List<String> expected = new ArrayList<>();
+        expected.add("ZLIB_OK");
+        expected.addAll(LINES);
+
+        // In one read
+        WireCodec in = new WireCodec();
+        in.inflateAfter("ZLIB_OK");
+        List<String> got = new ArrayList<>();
+        byte[] b = wire.toByteArray();
+        in.decode(b, 0, b.length, got::add);
+        assertEquals(expected, got);
+
+        // One byte per read: the inflater must pick up mid-stream
+        WireCodec slow = new WireCodec();
+        slow.inflateAfter("ZLIB_OK");
+        List<String> slowGot = new ArrayList<>();
+        for (int i = 0; i < b.length; i++) slow.decode(b, i, 1, slowGot::add);
+        assertEquals(expected, slowGot);
+    }
+
+    @Test
+    void eachDeflatedMessageDecodesOnArrival() throws IOException {
+        WireCodec out = new WireCodec();
+        WireCodec in = new WireCodec();
+        in.inflateAfter("ZLIB_OK");
+        List<String> got = new ArrayList<>();
+
+        byte[] first = out.encode("ZLIB_OK");
+        in.decode(first, 0, first.length, got::add);
+        out.startDeflate();
+        for (int i = 0; i < LINES.size(); i++) {
+            byte[] frame = out.encode(LINES.get(i));
+            in.decode(frame, 0, frame.length, got::add);
+            assertEquals(i + 2, got.size(), "sync flush: " + LINES.get(i));
+            assertEquals(LINES.get(i), got.get(i + 1));
+        }
+    }
+
+    @Test
+    void deflateShrinksMoveStream() {
+        WireCodec out = new WireCodec();
+        out.startDeflate();
+        long raw = 0, wire = 0;
+        for (int i = 0; i < 200; i++) {
+            String l = "MOVE_" + (i * 0.25f) + "00000_-3.000000_1.000000_0.000000_0_0_1_0_0_2";
+            raw += l.length() + 1;
+            wire += out.encode(l).length;
+        }
+        assertTrue(wire * 2 < raw, "wire " + wire + "B for " + raw + "B");
+    }
+
+    @Test
+    void rejectsRunawayLine() {
+        WireCodec in = new WireCodec();
+        byte[] junk = new byte[64 * 1024];
+        java.util.Arrays.fill(junk, (byte) 'x');
+        assertThrows(IOException.class, () -> {
+            for (int i = 0; i < 20; i++) in.decode(junk, 0, junk.length, l -> {});
+        });
+    }
+}
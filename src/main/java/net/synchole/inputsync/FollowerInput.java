@@ -0,0 +1,65 @@
+package net.synchole.inputsync;
+
+import net.minecraft.client.MinecraftClient;
+import net.minecraft.client.network.ClientPlayerEntity;
+import net.minecraft.util.PlayerInput;
+import net.minecraft.util.math.Vec2f;
+
+/**
+ * Follower movement source: the leader's movement, jump/sneak/sprint and camera are written
+ * straight into the player's Input at the end of KeyboardInput.tick (KeyboardInputMixin), i.e.
+ * inside this tick's player movement, instead of toggling KeyBindings at END_CLIENT_TICK and
+ * waiting for the next tick to read them. The follower's own keyboard is ignored while
+ * following and takes over again as soon as we lead, pause or disconnect.
+ *
+ * The PlayerInput and movement vector are built once per MOVE_ on the IO thread and reused
+ * every tick until the next one.
+ */
+public final class FollowerInput {
+
+    public static final class State {
+        final float yaw, pitch;
+        public final PlayerInput input;
+        public final Vec2f movement;
+
+        private State(float yaw, float pitch, PlayerInput input, Vec2f movement) {
+            this.yaw = yaw;
+            this.pitch = pitch;
+            this.input = input;
+            this.movement = movement;
+        }
+    }
+
+    /** Latest leader movement (IO thread writes, render thread reads) */
+    private static volatile State state = null;
+
+    private FollowerInput() {}
+
+    /** IO thread, on MOVE_. forward/strafe as in MOVE_: +1 forward/right, -1 back/left. */
+    static void offer(float yaw, float pitch, float forward, float strafe, boolean jump, boolean sneak, boolean sprint) {
+        PlayerInput in = new PlayerInput(forward > 0.0f, forward < 0.0f, strafe < 0.0f, strafe > 0.0f, jump, sneak, sprint);
+        // Same vector KeyboardInput builds: x = left - right, y = forward - back
+        Vec2f v = new Vec2f(in.left() == in.right() ? 0.0f : (in.left() ? 1.0f : -1.0f),
+                in.forward() == in.backward() ? 0.0f : (in.forward() ? 1.0f : -1.0f)).normalize();
+        state = new State(yaw, pitch, in, v);
+    }
+
+    /** New leader or connection: never replay a stale leader's movement. */
+    static void clear() {
+        state = null;
+    }
+
+    /** KeyboardInputMixin: the state to use this tick, or null to keep the keyboard's. */
+    public static State current() {
+        if (!NetworkClient.isFollowing()) return null;
+        return state;
+    }
+
+    /** KeyboardInputMixin: camera before this tick's travel and movement packet. */
+    public static void applyCamera(State s) {
+        ClientPlayerEntity p = MinecraftClient.getInstance().player;
+        if (p == null) return;
+        if (p.getYaw() != s.yaw) p.setYaw(s.yaw);
+        if (p.getPitch() != s.pitch) p.setPitch(s.pitch);
+    }
+}
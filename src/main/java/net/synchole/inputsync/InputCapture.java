@@ -0,0 +1,47 @@
+package net.synchole.inputsync;
+
+import org.lwjgl.glfw.GLFW;
+
+/**
+ * Raw input state written by the Mouse/Keyboard mixins and read by the send path.
+ *
+ * All input callbacks and the client tick run on the render thread, so these are plain
+ * fields: no locks, no ThreadLocal, no allocation on either side.
+ */
+public final class InputCapture {
+
+    /** Cursor in window pixels (as GLFW reports it) */
+    static double cursorX = 0.0, cursorY = 0.0;
+    static boolean cursorDirty = false;
+
+    /** GUI scale, refreshed once per tick instead of per callback */
+    static double scale = 1.0;
+
+    /** Last modifier bits seen on a key or mouse event */
+    static int mods = 0;
+
+    /** Held mouse buttons, bit n = GLFW button n */
+    static int buttons = 0;
+
+    private InputCapture() {}
+
+    static double uiX() { return cursorX / scale; }
+    static double uiY() { return cursorY / scale; }
+
+    static boolean isButtonHeld(int button) {
+        return button >= 0 && button < 32 && (buttons & (1 << button)) != 0;
+    }
+
+    static void onCursor(double x, double y) {
+        cursorX = x;
+        cursorY = y;
+        cursorDirty = true;
+    }
+
+    static void onButton(int button, int action, int modifiers) {
+        mods = modifiers;
+        if (button < 0 || button >= 32) return;
+        if (action == GLFW.GLFW_PRESS) buttons |= (1 << button);
+        else if (action == GLFW.GLFW_RELEASE) buttons &= ~(1 << button);
+    }
+}
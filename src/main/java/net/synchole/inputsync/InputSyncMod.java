@@ -2,6 +2,10 @@ package net.synchole.inputsync;
 
 import net.fabricmc.api.ClientModInitializer;
 import net.fabricmc.fabric.api.client.event.lifecycle.v1.ClientTickEvents;
+import net.fabricmc.fabric.api.client.rendering.v1.hud.HudElementRegistry;
+import net.fabricmc.fabric.api.client.screen.v1.ScreenEvents;
+import net.minecraft.client.gui.screen.ingame.HandledScreen;
+import net.minecraft.util.Identifier;
 
 public final class InputSyncMod implements ClientModInitializer {
 
@@ -16,6 +20,15 @@ public final class InputSyncMod implements ClientModInitializer {
         // - focus is reported here as well
         ClientTickEvents.END_CLIENT_TICK.register(NetworkClient::onTick);
 
+        // Slot hit-test index is built when a container screen opens or resizes
+        ScreenEvents.AFTER_INIT.register((client, screen, w, h) -> {
+            if (screen instanceof HandledScreen<?> hs) SlotIndex.build(hs);
+            else SlotIndex.clear();
+        });
+
+        // Metrics overlay (hidden until toggled with the overlay key)
+        HudElementRegistry.addLast(Identifier.of("inputsync", "metrics"), (ctx, tickCounter) -> SyncMetrics.render(ctx));
+
         System.out.println("[InputSync] Client initialized (sync enabled)");
     }
 }
@@ -0,0 +1,207 @@
+package net.synchole.inputsync;
+
+import net.minecraft.client.MinecraftClient;
+import net.minecraft.client.option.KeyBinding;
+import net.synchole.inputsync.core.CaptureRing;
+import net.synchole.inputsync.mixin.KeyBindingAccessor;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Generic key binding sync: the pressed state of every registered KeyBinding (vanilla and modded)
+ * as one bitset, instead of a field per key in MOVE_.
+ *
+ * - KEYMAP_<hash>_<name>,<name>,...  leader's binding table (translation keys, sorted), sent
+ *                                    when it becomes leader; the relay keeps it for joiners
+ * - KEYS_<hash>_<hex>                bit i = table[i] pressed, 4 bits per hex digit, sent on change
+ *
+ * Followers map the leader's table onto their own bindings by name (bindings they do not have
+ * are skipped) and apply KEYS_ only for the table they were given. Applying is a diff: only
+ * bindings whose state changed are touched, and a press also bumps timesPressed so wasPressed()
+ * actions (drop, swap hands, perspective) fire once per leader press.
+ *
+ * Bindings synced elsewhere are left out: movement, sprint and sneak ride in MOVE_, attack/use
+ * are replayed as pulses, hotbar keys as HBAR_, and screen keys as OPEN_ events.
+ *
+ * Render thread only.
+ */
+final class KeyTable {
+
+    private static final List<String> EXCLUDED = List.of(
+            "key.forward", "key.back", "key.left", "key.right", "key.jump", "key.sneak", "key.sprint",
+            "key.attack", "key.use",
+            "key.inventory", "key.chat", "key.command", "key.advancements", "key.socialInteractions",
+            "key.quickActions", "key.screenshot", "key.fullscreen");
+    private static final String[] EXCLUDED_PREFIXES = {"key.hotbar.", "key.debug."};
+
+    /** Leader: local table and the state last sent */
+    private static KeyBinding[] local = null;
+    private static String localHash = null;
+    private static long[] sent = new long[0];
+    private static long[] scratch = new long[0];
+    private static boolean keymapSent = false;
+
+    /** Follower: leader table mapped onto local bindings (null = not bound here), and what was applied */
+    private static KeyBinding[] mapped = null;
+    private static String mappedHash = null;
+    private static long[] applied = new long[0];
+
+    private KeyTable() {}
+
+    /* ===================== TABLE ===================== */
+
+    private static boolean synced(String name) {
+        if (name == null || name.isEmpty() || name.indexOf(',') >= 0) return false;
+        if (EXCLUDED.contains(name)) return false;
+        for (String p : EXCLUDED_PREFIXES) if (name.startsWith(p)) return false;
+        return true;
+    }
+
+    /** Built once, after mods have registered their bindings (the first leader tick). */
+    private static KeyBinding[] local(MinecraftClient mc) {
+        if (local != null) return local;
+        List<KeyBinding> keys = new ArrayList<>();
+        for (KeyBinding k : mc.options.allKeys) {
+            if (synced(k.getTranslationKey())) keys.add(k);
+        }
+        keys.sort(Comparator.comparing(KeyBinding::getTranslationKey));
+        local = keys.toArray(new KeyBinding[0]);
+
+        StringBuilder names = new StringBuilder();
+        for (KeyBinding k : local) {
+            if (names.length() > 0) names.append(',');
+            names.append(k.getTranslationKey());
+        }
+        CRC32 crc = new CRC32();
+        crc.update(names.toString().getBytes(StandardCharsets.UTF_8));
+        localHash = Long.toHexString(crc.getValue());
+        sent = new long[(local.length + 63) >>> 6];
+        scratch = new long[sent.length];
+        System.out.println("[InputSync] key table: " + local.length + " bindings, hash " + localHash);
+        return local;
+    }
+
+    /** Leader lost or gained the role, or a new connection: resend the table before the next KEYS_. */
+    static void reset() {
+        keymapSent = false;
+    }
+
+    /* ===================== LEADER ===================== */
+
+    /**
+     * Samples every binding in the table; appends KEYMAP_ (first time) and KEYS_ (on change)
+     * to {@code out}. Returns the number of lines committed. Allocation-free after the first call.
+     */
+    static int capture(MinecraftClient mc, CaptureRing out) {
+        KeyBinding[] keys = local(mc);
+        int lines = 0;
+        if (!keymapSent) {
+            out.begin().put("KEYMAP_").put(localHash).put('_');
+            for (int i = 0; i < keys.length; i++) {
+                if (i > 0) out.put(',');
+                out.put(keys[i].getTranslationKey());
+            }
+            if (!out.commit()) return 0;
+            keymapSent = true;
+            Arrays.fill(sent, -1L); // force a full KEYS_
+            lines++;
+        }
+
+        long[] now = scratch;
+        Arrays.fill(now, 0L);
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i].isPressed()) now[i >>> 6] |= 1L << i;
+        }
+        if (Arrays.equals(now, sent)) return lines;
+
+        out.begin().put("KEYS_").put(localHash).put('_');
+        for (int i = 0; i < keys.length; i += 4) {
+            int nibble = (int) (now[i >>> 6] >>> (i & 63)) & 0xF;
+            out.put((byte) Character.forDigit(nibble, 16));
+        }
+        if (!out.commit()) return lines;
+        System.arraycopy(now, 0, sent, 0, now.length);
+        return lines + 1;
+    }
+
+    /* ===================== FOLLOWER ===================== */
+
+    /** KEYMAP_<hash>_<names>: releases whatever the previous table held, then maps by name. */
+    static void applyKeymap(MinecraftClient mc, String msg) {
+        String[] p = msg.split("_", 3);
+        if (p.length < 3) return;
+
+        releaseAll();
+        Map<String, KeyBinding> byName = new HashMap<>();
+        for (KeyBinding k : mc.options.allKeys) {
+            if (synced(k.getTranslationKey())) byName.put(k.getTranslationKey(), k);
+        }
+        String[] names = p[2].isEmpty() ? new String[0] : p[2].split(",");
+        KeyBinding[] m = new KeyBinding[names.length];
+        int missing = 0;
+        for (int i = 0; i < names.length; i++) {
+            m[i] = byName.get(names[i]);
+            if (m[i] == null) missing++;
+        }
+        mapped = m;
+        mappedHash = p[1];
+        applied = new long[(m.length + 63) >>> 6];
+        System.out.println("[InputSync] leader key table " + mappedHash + ": " + m.length + " bindings"
+                + (missing > 0 ? ", " + missing + " not bound here" : ""));
+    }
+
+    /** KEYS_<hash>_<hex>: diff against what was last applied. False if it is for another table. */
+    static boolean applyKeys(String msg) {
+        KeyBinding[] m = mapped;
+        if (m == null) return false;
+        int a = msg.indexOf('_');
+        int b = msg.indexOf('_', a + 1);
+        if (b < 0 || !mappedHash.equals(msg.substring(a + 1, b))) return false;
+
+        for (int i = 0; i < m.length; i++) {
+            int c = b + 1 + (i >>> 2);
+            int nibble = c < msg.length() ? Character.digit(msg.charAt(c), 16) : 0;
+            boolean down = nibble > 0 && (nibble & (1 << (i & 3))) != 0;
+            boolean was = (applied[i >>> 6] & (1L << i)) != 0;
+            if (down == was) continue;
+            if (down) applied[i >>> 6] |= 1L << i;
+            else applied[i >>> 6] &= ~(1L << i);
+            KeyBinding k = m[i];
+            if (k == null) continue;
+            k.setPressed(down);
+            if (down) {
+                KeyBindingAccessor acc = (KeyBindingAccessor) k;
+                acc.inputsync$setTimesPressed(acc.inputsync$getTimesPressed() + 1);
+            }
+        }
+        return true;
+    }
+
+    /** Every follower tick: vanilla unpresses keys on screen/focus changes, hold what the leader holds. */
+    static void reassert() {
+        KeyBinding[] m = mapped;
+        if (m == null) return;
+        for (int i = 0; i < m.length; i++) {
+            if (m[i] == null) continue;
+            boolean down = (applied[i >>> 6] & (1L << i)) != 0;
+            if (m[i].isPressed() != down) m[i].setPressed(down);
+        }
+    }
+
+    /** Becoming leader, pausing or a new leader table: let go of everything we were holding. */
+    static void releaseAll() {
+        KeyBinding[] m = mapped;
+        if (m == null) return;
+        for (int i = 0; i < m.length; i++) {
+            if (m[i] != null && (applied[i >>> 6] & (1L << i)) != 0) m[i].setPressed(false);
+        }
+        Arrays.fill(applied, 0L);
+    }
+}
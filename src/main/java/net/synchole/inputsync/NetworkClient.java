@@ -15,57 +15,45 @@ import net.minecraft.util.Hand;
 import net.minecraft.util.hit.BlockHitResult;
 import net.minecraft.util.hit.EntityHitResult;
 import net.minecraft.util.hit.HitResult;
-import org.lwjgl.glfw.*;
-
-import java.io.BufferedReader;
-import java.io.InputStreamReader;
-import java.io.PrintWriter;
+import net.synchole.inputsync.core.AllocCheck;
+import net.synchole.inputsync.core.CaptureRing;
+import net.synchole.inputsync.core.ClickStream;
+import net.synchole.inputsync.core.GameAdapter;
+import net.synchole.inputsync.core.MessageType;
+import net.synchole.inputsync.core.MoveState;
+import net.synchole.inputsync.core.Protocol;
+import net.synchole.inputsync.core.SyncClient;
+import net.synchole.inputsync.core.SyncEvents;
+import net.synchole.inputsync.core.SyncLog;
+import net.synchole.inputsync.core.SyncStats;
+import net.synchole.inputsync.mixin.HandledScreenAccessor;
+import org.lwjgl.glfw.GLFW;
+
+import java.io.IOException;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
-import java.net.InetSocketAddress;
-import java.net.Socket;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Base64;
+import java.util.List;
 import java.util.Locale;
 
 public final class NetworkClient {
 
-    private static final String HOST = System.getProperty("inputsync.host", "127.0.0.1");
-    private static final int PORT = Integer.parseInt(System.getProperty("inputsync.port", "25590"));
-
-    private static volatile Socket socket;
-    private static volatile PrintWriter out;
-    private static volatile boolean connected = false;
-
-    /** Assigned by server */
-    private static volatile boolean isLeader = false;
-
-    /** Prevent echo loops */
-    private static final ThreadLocal<Boolean> SUPPRESS_SEND =
-            ThreadLocal.withInitial(() -> Boolean.FALSE);
+    /** Relay connection, session and role; NetworkClient is the game side of it */
+    private static final SyncClient CLIENT = new SyncClient(SyncClient.Options.fromSystemProperties(), new Adapter());
 
-    /** Latest movement state from leader */
-    private static volatile MoveState lastMove = null;
+    /** Prevent echo loops (render thread only: input callbacks, ticks and mc.execute tasks) */
+    private static boolean suppressSend = false;
 
     /** Rate limiting */
     private static long lastSendNanos = 0L;
 
-    /** GLFW callbacks */
-    private static volatile boolean callbacksInstalled = false;
-    private static GLFWCursorPosCallbackI prevCursorCb;
-    private static GLFWMouseButtonCallbackI prevMouseCb;
-    private static GLFWScrollCallbackI prevScrollCb;
-    private static GLFWKeyCallbackI prevKeyCb;
-    private static GLFWCharCallbackI prevCharCb;
-
-    /** UI cursor tracking */
-    private static volatile double uiX = 0.0, uiY = 0.0;
-    private static volatile int uiMods = 0;
-
-    /** Hotbar slot selection */
-    private static volatile Field invSelectedSlotField = null;
+    /** Follower: hotbar slot last applied from MOVE_/HBAR_, and to which player entity (-1 = none) */
+    private static int lastAppliedHotbar = -1;
+    private static int lastAppliedHotbarEntity = -1;
 
     /** Follower edge tracking */
     private static volatile boolean lastAttackHeld = false;
@@ -93,18 +81,23 @@ public final class NetworkClient {
     private static volatile Method cachedPackedHandler = null;
     private static volatile String cachedPackedHandlerOwner = null;
 
-    /** Cached HandledScreen gui origin fields */
-    private static volatile Field handledXField = null;
-    private static volatile Field handledYField = null;
+    /** Leader: inventory clicks batched into one INVB_ frame per tick (render thread only) */
+    private static final int INV_BATCH_MAX = 32;
+    private static final int[] invSlots = new int[INV_BATCH_MAX];
+    private static final int[] invButtons = new int[INV_BATCH_MAX];
+    private static final int[] invActions = new int[INV_BATCH_MAX];
+    private static int invBatchSyncId = -1;
+    private static int invBatchCount = 0;
+
+    /** Leader: outbound lines encoded in place on the render thread, drained by the IO thread */
+    private static final CaptureRing OUT = CLIENT.out();
 
-    /** Cached HandledScreen hovered slot field */
-    private static volatile Field handledHoveredSlotField = null;
+    /** Last window focus reported to SyncClient (render thread only) */
+    private static boolean lastFocused = false;
 
     /** Follower block breaking state */
     private static volatile boolean wasBreaking = false;
 
-    private static volatile boolean started = false;
-
     private NetworkClient() {}
 
     /* ========================================================= */
@@ -112,48 +105,70 @@ public final class NetworkClient {
     /* ========================================================= */
 
     public static void start() {
-        if (started) return;
-        started = true;
-
-        System.out.println("[InputSync] START " + HOST + ":" + PORT);
-
-        installGlfwCallbacksWhenReady();
-
-        Thread t = new Thread(NetworkClient::connectLoop, "InputSync-ConnectLoop");
-        t.setDaemon(true);
-        t.start();
+        try {
+            CLIENT.start();
+        } catch (IOException e) {
+            System.out.println("[InputSync] network init failed: " + e);
+        }
     }
 
     /** Called from ClientTickEvents.END_CLIENT_TICK.register(NetworkClient::onTick); */
     public static void onTick(MinecraftClient mc) {
         if (mc == null) return;
-        if (!connected || !CommandHandler.isEnabled()) return;
+        PowerMode.tick(mc);
+        reportFocus(mc);
+        if (!isConnected() || !CLIENT.isEnabled()) return;
 
         // Followers: apply leader state every tick
-        if (!isLeader) {
-            if (lastMove != null) {
+        if (!CLIENT.isCapturing()) {
+            suppressSending(() -> ClickStream.replay(e -> replayClick(mc, (char) e)));
+            MoveState st = CLIENT.latestMove();
+            if (st != null) {
+                if (CLIENT.takeFreshMove()) SyncStats.applied(MessageType.MOVE);
+                long t0 = System.nanoTime();
+                SyncEvents.Apply ev = SyncEvents.apply(0L);
                 suppressSending(() -> {
                     try {
-                        lastMove.apply(mc);
+                        applyMove(mc, st);
+                        KeyTable.reassert();
                     } catch (Throwable t) {
-                        System.out.println("[InputSync] APPLY FAILED: " + t);
+                        SyncLog.failed("apply", t, "screen", mc.currentScreen != null ? mc.currentScreen.getClass().getName() : null);
                     }
                 });
+                SyncEvents.end(ev, MessageType.MOVE);
+                SyncMetrics.recordApply(System.nanoTime() - t0);
             }
             return;
         }
 
         // Leader: send state ~30Hz
+        flushInvBatch();
+        if (ClickStream.captureInto(OUT)) published(MessageType.CLICK);
         if (mc.player == null) return;
 
         long now = System.nanoTime();
         if (now - lastSendNanos < 33_000_000L) return;
         lastSendNanos = now;
 
-        if (Boolean.TRUE.equals(SUPPRESS_SEND.get())) return;
+        if (suppressSend) return;
+
+        InputCapture.scale = mc.getWindow().getScaleFactor();
 
-        MoveState st = MoveState.capture(mc);
-        if (st != null) sendToServer(st.encode());
+        long alloc = AllocCheck.begin();
+        SyncEvents.Capture ev = SyncEvents.capture(OUT);
+        if (captureMove(mc, OUT)) published(MessageType.MOVE);
+        if (hasCap(Protocol.KEYS)) {
+            for (int n = KeyTable.capture(mc, OUT); n > 0; n--) published(MessageType.KEYS);
+        }
+
+        // Debug: cursor moves are coalesced to one UI_MOVE per send
+        if (InputCapture.cursorDirty) {
+            InputCapture.cursorDirty = false;
+            OUT.begin().put("UI_MOVE_").putFixed(InputCapture.uiX(), 2).put('_').putFixed(InputCapture.uiY(), 2);
+            if (OUT.commit()) published(MessageType.UI);
+        }
+        SyncEvents.end(ev, OUT, "tick");
+        AllocCheck.end(alloc, "tick");
 
         // Leader: if chat is open, send full buffer state ONLY when it changes
         if (mc.currentScreen instanceof ChatScreen) {
@@ -169,262 +184,335 @@ public final class NetworkClient {
     }
 
     /* ========================================================= */
-    /* ===================== GLFW CAPTURE ====================== */
+    /* ===================== INPUT CAPTURE ===================== */
     /* ========================================================= */
 
-    private static void installGlfwCallbacksWhenReady() {
-        Thread t = new Thread(() -> {
-            while (!callbacksInstalled) {
-                try {
-                    MinecraftClient mc = MinecraftClient.getInstance();
-                    if (mc != null) {
-                        mc.execute(() -> {
-                            if (callbacksInstalled) return;
-
-                            long handle = mc.getWindow().getHandle();
-                            if (handle == 0L) return;
-
-                            callbacksInstalled = true;
-
-                            prevCursorCb = GLFW.glfwSetCursorPosCallback(handle, (w, x, y) -> {
-                                if (prevCursorCb != null) prevCursorCb.invoke(w, x, y);
-
-                                double scale = mc.getWindow().getScaleFactor();
-                                uiX = x / scale;
-                                uiY = y / scale;
-
-                                if (!shouldSendNow()) return;
-                                sendToServer("UI_MOVE_" + uiX + "_" + uiY);
-                            });
-
-                            prevMouseCb = GLFW.glfwSetMouseButtonCallback(handle, (w, b, a, m) -> {
-                                if (prevMouseCb != null) prevMouseCb.invoke(w, b, a, m);
-                                uiMods = m;
-
-                                if (!shouldSendNow()) return;
-
-                                // Inventory clicks: send slot click using hovered slot (most reliable)
-                                if (mc.currentScreen instanceof HandledScreen<?> hs && mc.player != null && mc.interactionManager != null) {
-                                    if (a == GLFW.GLFW_PRESS) {
-                                        int syncId = hs.getScreenHandler().syncId;
-
-                                        int slotId = getHoveredSlotId(hs);
-                                        if (slotId == -999) slotId = slotIdFromMouse(hs, uiX, uiY);
-
-                                        int button = (b == GLFW.GLFW_MOUSE_BUTTON_RIGHT) ? 1 : 0;
-                                        boolean shift = (m & GLFW.GLFW_MOD_SHIFT) != 0;
-                                        int action = shift ? SlotActionType.QUICK_MOVE.ordinal() : SlotActionType.PICKUP.ordinal();
-
-                                        sendToServer("INV_" + syncId + "_" + slotId + "_" + button + "_" + action);
-                                        return;
-                                    }
-                                }
-
-                                // Debug
-                                if (a == GLFW.GLFW_PRESS) {
-                                    sendToServer("UI_CLICK_" + b + "_" + uiX + "_" + uiY + "_" + m);
-                                } else if (a == GLFW.GLFW_RELEASE) {
-                                    sendToServer("UI_RELEASE_" + b + "_" + uiX + "_" + uiY + "_" + m);
-                                }
-                            });
-
-                            prevScrollCb = GLFW.glfwSetScrollCallback(handle, (w, dx, dy) -> {
-                                if (prevScrollCb != null) prevScrollCb.invoke(w, dx, dy);
-                                if (!shouldSendNow()) return;
-                                sendToServer("UI_SCROLL_" + uiX + "_" + uiY + "_" + dx + "_" + dy);
-                            });
-
-                            // Decide intent based on screen BEFORE Minecraft handles the key
-                            prevKeyCb = GLFW.glfwSetKeyCallback(handle, (w, k, sc, a, m) -> {
-                                Screen before = mc.currentScreen; // capture BEFORE vanilla flips screen state
-                                uiMods = m;
-
-                                if (prevKeyCb != null) prevKeyCb.invoke(w, k, sc, a, m);
-
-                                if (!shouldSendNow()) return;
-
-                                if (a != GLFW.GLFW_PRESS) return;
-
-                                // Chat: only handle Enter to send + Escape to close.
-                                // IMPORTANT: return so keys like "E" are NOT hijacked by inventory/menu logic.
-                                if (before instanceof ChatScreen) {
-                                    if (k == GLFW.GLFW_KEY_ENTER || k == GLFW.GLFW_KEY_KP_ENTER) {
-                                        sendToServer("CHAT_SEND");
-                                    } else if (k == GLFW.GLFW_KEY_ESCAPE) {
-                                        sendToServer("CLOSE_SCREEN");
-                                    }
-                                    return;
-                                }
-
-                                if (k == GLFW.GLFW_KEY_ESCAPE) {
-                                    if (before == null) sendToServer("OPEN_MENU");
-                                    else sendToServer("CLOSE_SCREEN");
-                                    return;
-                                }
-
-                                if (k == GLFW.GLFW_KEY_E) {
-                                    if (before == null) sendToServer("OPEN_INV");
-                                    else sendToServer("CLOSE_SCREEN");
-                                    return;
-                                }
-
-                                if (before == null) {
-                                    if (k == GLFW.GLFW_KEY_T) {
-                                        sendToServer("OPEN_CHAT");
-                                        return;
-                                    }
-                                    if (k == GLFW.GLFW_KEY_SLASH) {
-                                        sendToServer("OPEN_CMD");
-                                        return;
-                                    }
-                                }
-
-                                if (k >= GLFW.GLFW_KEY_1 && k <= GLFW.GLFW_KEY_9) {
-                                    int slot = k - GLFW.GLFW_KEY_1;
-                                    sendToServer("HBAR_" + slot);
-                                }
-                            });
-
-                            prevCharCb = GLFW.glfwSetCharCallback(handle, (w, cp) -> {
-                                if (prevCharCb != null) prevCharCb.invoke(w, cp);
-                                if (!shouldSendNow()) return;
-
-                                // Debug only; chat uses CHAT_SET sync
-                                sendToServer("UI_CHAR_" + cp + "_" + uiMods);
-                            });
-
-                            System.out.println("[InputSync] GLFW callbacks installed");
-                        });
-                    }
-                    Thread.sleep(200);
-                } catch (Throwable ignored) {}
-            }
-        }, "InputSync-GlfwInstaller");
+    // Called from MouseMixin / KeyboardMixin on the render thread, before vanilla handles the event.
+    // Leader events are encoded straight into OUT: nothing here allocates (see AllocCheck).
 
-        t.setDaemon(true);
-        t.start();
+    public static void onCursorPos(double x, double y) {
+        InputCapture.onCursor(x, y);
     }
 
-    /* ========================================================= */
-    /* ===================== NETWORK =========================== */
-    /* ========================================================= */
+    public static void onMouseButton(int b, int a, int m) {
+        InputCapture.onButton(b, a, m);
 
-    private static void connectLoop() {
-        while (true) {
-            try {
-                if (!connected) tryConnect();
-                Thread.sleep(1000);
-            } catch (Throwable ignored) {}
-        }
+        if (!shouldSendNow()) return;
+        long alloc = AllocCheck.begin();
+        SyncEvents.Capture ev = SyncEvents.capture(OUT);
+        if (hasCap(Protocol.CLK)) ClickStream.record(b, a, MinecraftClient.getInstance().currentScreen == null);
+        captureMouseButton(b, a, m);
+        SyncEvents.end(ev, OUT, "mouseButton");
+        AllocCheck.end(alloc, "mouseButton");
     }
 
-    private static void tryConnect() {
-        cleanupSocket();
-        try {
-            Socket s = new Socket();
-            s.connect(new InetSocketAddress(HOST, PORT), 1500);
-            s.setTcpNoDelay(true);
-
-            out = new PrintWriter(s.getOutputStream(), true);
-            BufferedReader in = new BufferedReader(
-                    new InputStreamReader(s.getInputStream(), StandardCharsets.UTF_8));
-
-            socket = s;
-            connected = true;
-            isLeader = false;
-
-            new Thread(() -> readerLoop(in), "InputSync-Reader").start();
-            System.out.println("[InputSync] CONNECTED");
-        } catch (Exception ignored) {
-            connected = false;
+    private static void captureMouseButton(int b, int a, int m) {
+        MinecraftClient mc = MinecraftClient.getInstance();
+        double uiX = InputCapture.uiX();
+        double uiY = InputCapture.uiY();
+
+        // Inventory clicks: send slot click using hovered slot (most reliable)
+        if (mc.currentScreen instanceof HandledScreen<?> hs && mc.player != null && mc.interactionManager != null) {
+            if (a == GLFW.GLFW_PRESS) {
+                int syncId = hs.getScreenHandler().syncId;
+
+                int slotId = getHoveredSlotId(hs);
+                if (slotId == -999) slotId = SlotIndex.hit(hs, uiX, uiY);
+
+                int button = (b == GLFW.GLFW_MOUSE_BUTTON_RIGHT) ? 1 : 0;
+                boolean shift = (m & GLFW.GLFW_MOD_SHIFT) != 0;
+                int action = shift ? SlotActionType.QUICK_MOVE.ordinal() : SlotActionType.PICKUP.ordinal();
+
+                queueInvClick(syncId, slotId, button, action);
+                return;
+            }
         }
+
+        // Debug
+        if (a != GLFW.GLFW_PRESS && a != GLFW.GLFW_RELEASE) return;
+        OUT.begin().put(a == GLFW.GLFW_PRESS ? "UI_CLICK_" : "UI_RELEASE_").putInt(b)
+                .put('_').putFixed(uiX, 2).put('_').putFixed(uiY, 2).put('_').putInt(m);
+        if (OUT.commit()) published(MessageType.UI);
     }
 
-    private static void readerLoop(BufferedReader in) {
-        try {
-            String line;
-            while ((line = in.readLine()) != null) handleIncoming(line.trim());
-        } catch (Exception ignored) {
-        } finally {
-            connected = false;
-            isLeader = false;
-            cleanupSocket();
+    public static void onMouseScroll(double dx, double dy) {
+        if (!shouldSendNow()) return;
+        long alloc = AllocCheck.begin();
+        SyncEvents.Capture ev = SyncEvents.capture(OUT);
+        OUT.begin().put("UI_SCROLL_").putFixed(InputCapture.uiX(), 2).put('_').putFixed(InputCapture.uiY(), 2)
+                .put('_').putFixed(dx, 3).put('_').putFixed(dy, 3);
+        if (OUT.commit()) published(MessageType.UI);
+        SyncEvents.end(ev, OUT, "mouseScroll");
+        AllocCheck.end(alloc, "mouseScroll");
+    }
+
+    public static void onKey(int k, int a, int m) {
+        InputCapture.mods = m;
+
+        // Metrics overlay: key toggles, Shift+key dumps to a file (works on leader and followers)
+        if (k == SyncMetrics.OVERLAY_KEY && a == GLFW.GLFW_PRESS) {
+            if ((m & GLFW.GLFW_MOD_SHIFT) != 0) SyncMetrics.dump(CLIENT.sessionId());
+            else SyncMetrics.toggleOverlay();
+            return;
         }
+
+        if (!shouldSendNow()) return;
+        if (a != GLFW.GLFW_PRESS) return;
+        long alloc = AllocCheck.begin();
+        SyncEvents.Capture ev = SyncEvents.capture(OUT);
+        captureKey(k);
+        SyncEvents.end(ev, OUT, "key");
+        AllocCheck.end(alloc, "key");
     }
 
-    private static void handleIncoming(String msg) {
-        if (msg.isEmpty()) return;
+    private static void captureKey(int k) {
+        // Screen/hotbar/chat events must reach followers after the clicks that preceded them
+        flushInvBatch();
 
-        if ("ROLE_LEADER".equals(msg)) { isLeader = true;  System.out.println("[InputSync] ROLE=LEADER"); return; }
-        if ("ROLE_FOLLOWER".equals(msg)) { isLeader = false; System.out.println("[InputSync] ROLE=FOLLOWER"); return; }
+        Screen before = MinecraftClient.getInstance().currentScreen;
 
-        if ("PAUSE".equals(msg)) { CommandHandler.setEnabled(false); return; }
-        if ("RESUME".equals(msg)) { CommandHandler.setEnabled(true); return; }
-        if ("TOGGLE_SYNC".equals(msg)) { CommandHandler.toggle(); return; }
+        // Chat: only handle Enter to send + Escape to close.
+        // IMPORTANT: return so keys like "E" are NOT hijacked by inventory/menu logic.
+        if (before instanceof ChatScreen) {
+            if (k == GLFW.GLFW_KEY_ENTER || k == GLFW.GLFW_KEY_KP_ENTER) {
+                sendToServer("CHAT_SEND");
+            } else if (k == GLFW.GLFW_KEY_ESCAPE) {
+                sendToServer("CLOSE_SCREEN");
+            }
+            return;
+        }
 
-        if (!CommandHandler.isEnabled()) return;
+        if (k == GLFW.GLFW_KEY_ESCAPE) {
+            if (before == null) sendToServer("OPEN_MENU");
+            else sendToServer("CLOSE_SCREEN");
+            return;
+        }
 
-        if (msg.startsWith("MOVE_")) {
-            if (!isLeader) lastMove = MoveState.parse(msg);
+        if (k == GLFW.GLFW_KEY_E) {
+            if (before == null) sendToServer("OPEN_INV");
+            else sendToServer("CLOSE_SCREEN");
             return;
         }
 
-        if ("CLOSE_SCREEN".equals(msg)) {
-            if (!isLeader) {
-                MinecraftClient mc = MinecraftClient.getInstance();
-                if (mc != null) mc.execute(() -> suppressSending(() -> mc.setScreen(null)));
+        if (before == null) {
+            if (k == GLFW.GLFW_KEY_T) {
+                sendToServer("OPEN_CHAT");
+                return;
+            }
+            if (k == GLFW.GLFW_KEY_SLASH) {
+                sendToServer("OPEN_CMD");
+                return;
             }
-            return;
         }
 
-        if (msg.startsWith("OPEN_")) {
-            if (!isLeader) {
-                MinecraftClient mc = MinecraftClient.getInstance();
-                if (mc != null) mc.execute(() -> suppressSending(() -> applyOpen(mc, msg)));
+        if (k >= GLFW.GLFW_KEY_1 && k <= GLFW.GLFW_KEY_9) {
+            int slot = k - GLFW.GLFW_KEY_1;
+            OUT.begin().put("HBAR_").putInt(slot);
+            if (OUT.commit()) published(MessageType.HBAR);
+        }
+    }
+
+    private static void queueInvClick(int syncId, int slotId, int button, int action) {
+        if (invBatchCount > 0 && syncId != invBatchSyncId) flushInvBatch();
+        if (invBatchCount == 0) invBatchSyncId = syncId;
+        invSlots[invBatchCount] = slotId;
+        invButtons[invBatchCount] = button;
+        invActions[invBatchCount] = action;
+        if (++invBatchCount >= INV_BATCH_MAX) flushInvBatch();
+    }
+
+    /** INVB_<syncId>_<slot>:<button>:<action>,... or, if the relay lacks invb, one INV_<syncId>_<slot>_<button>_<action> per click. */
+    private static void flushInvBatch() {
+        int n = invBatchCount;
+        if (n == 0) return;
+        invBatchCount = 0;
+        if (!shouldSendNow()) return;
+
+        if (hasCap(Protocol.INVB)) {
+            OUT.begin().put("INVB_").putInt(invBatchSyncId).put('_');
+            for (int i = 0; i < n; i++) {
+                if (i > 0) OUT.put(',');
+                OUT.putInt(invSlots[i]).put(':').putInt(invButtons[i]).put(':').putInt(invActions[i]);
             }
+            if (OUT.commit()) published(MessageType.INVB);
             return;
         }
+        for (int i = 0; i < n; i++) {
+            OUT.begin().put("INV_").putInt(invBatchSyncId).put('_').putInt(invSlots[i])
+                    .put('_').putInt(invButtons[i]).put('_').putInt(invActions[i]);
+            if (OUT.commit()) published(MessageType.INV);
+        }
+    }
 
-        if (msg.startsWith("HBAR_")) {
-            if (!isLeader) {
-                int slot = safeParseInt(msg.substring("HBAR_".length()), 0);
-                MinecraftClient mc = MinecraftClient.getInstance();
-                if (mc != null) mc.execute(() -> suppressSending(() -> setSelectedHotbarSlot(mc, slot)));
+    public static void onChar(int cp) {
+        if (!shouldSendNow()) return;
+
+        // Debug only; chat uses CHAT_SET sync
+        long alloc = AllocCheck.begin();
+        SyncEvents.Capture ev = SyncEvents.capture(OUT);
+        OUT.begin().put("UI_CHAR_").putInt(cp).put('_').putInt(InputCapture.mods);
+        if (OUT.commit()) published(MessageType.UI);
+        SyncEvents.end(ev, OUT, "char");
+        AllocCheck.end(alloc, "char");
+    }
+
+    /* ========================================================= */
+    /* ===================== NETWORK =========================== */
+    /* ========================================================= */
+
+    /** SyncClient's callbacks, on the InputSync-IO thread: game work goes through mc.execute. */
+    private static final class Adapter implements GameAdapter {
+        @Override
+        public void onConnected() {
+            FollowerInput.clear();
+        }
+
+        @Override
+        public void onRole(boolean leader, boolean changed) {
+            if (leader) {
+                if (changed) onBecameLeader();
+                FollowerInput.clear();
+                PowerMode.setFollower(false);
+            } else {
+                PowerMode.setFollower(true);
             }
-            return;
+        }
+
+        @Override
+        public void onMove(MoveState st) {
+            FollowerInput.offer(st.yaw, st.pitch, st.forward, st.strafe, st.jump, st.sneak, st.sprint);
+        }
+
+        @Override
+        public boolean onEvent(MessageType type, String msg) {
+            return applyEvent(type, msg);
+        }
+
+        @Override
+        public void onDumpMetrics() {
+            SyncMetrics.dump(CLIENT.sessionId());
+        }
+    }
+
+    /** Follower: one leader event (not MOVE_). False if this client has no apply for it. */
+    private static boolean applyEvent(MessageType type, String msg) {
+        MinecraftClient mc = MinecraftClient.getInstance();
+        if (mc == null) return false;
+
+        if ("CLOSE_SCREEN".equals(msg)) {
+            applyOnMain(mc, type, () -> mc.setScreen(null));
+            return true;
+        }
+
+        if (msg.startsWith("CLK_")) {
+            applyOnMain(mc, type, () -> ClickStream.enqueue(msg));
+            return true;
+        }
+        if (msg.startsWith("KEYMAP_")) {
+            applyOnMain(mc, type, () -> KeyTable.applyKeymap(mc, msg));
+            return true;
+        }
+
+        if (msg.startsWith("KEYS_")) {
+            applyOnMain(mc, type, () -> {
+                if (!KeyTable.applyKeys(msg)) SyncStats.dropped(MessageType.KEYS); // no or another table
+            });
+            return true;
+        }
+
+        if (msg.startsWith("OPEN_")) {
+            applyOnMain(mc, type, () -> applyOpen(mc, msg));
+            return true;
+        }
+
+        if (msg.startsWith("HBAR_")) {
+            int slot = safeParseInt(msg.substring("HBAR_".length()), 0);
+            applyOnMain(mc, type, () -> setSelectedHotbarSlot(mc, slot));
+            return true;
+        }
+
+        if (msg.startsWith("INVB_")) {
+            applyOnMain(mc, type, () -> applyInvBatch(mc, msg));
+            return true;
         }
 
         if (msg.startsWith("INV_")) {
-            if (!isLeader) {
-                MinecraftClient mc = MinecraftClient.getInstance();
-                if (mc != null) mc.execute(() -> suppressSending(() -> applyInvClick(mc, msg)));
-            }
-            return;
+            applyOnMain(mc, type, () -> applyInvClick(mc, msg));
+            return true;
         }
 
         if (msg.startsWith("CHAT_SET_")) {
-            if (!isLeader) {
-                MinecraftClient mc = MinecraftClient.getInstance();
-                if (mc != null) mc.execute(() -> suppressSending(() -> applyChatSet(mc, msg)));
-            }
-            return;
+            applyOnMain(mc, type, () -> applyChatSet(mc, msg));
+            return true;
         }
 
         if ("CHAT_SEND".equals(msg)) {
-            if (!isLeader) {
-                MinecraftClient mc = MinecraftClient.getInstance();
-                if (mc != null) mc.execute(() -> suppressSending(() -> applyChatSend(mc)));
-            }
-            return;
+            applyOnMain(mc, type, () -> applyChatSend(mc));
+            return true;
         }
 
         // UI debug only
         if (msg.startsWith("UI_")) {
-            if (!isLeader) {
-                MinecraftClient mc = MinecraftClient.getInstance();
-                if (mc != null) mc.execute(() -> suppressSending(() -> applyUiDebug(mc, msg)));
-            }
+            applyOnMain(mc, type, () -> applyUiDebug(mc, msg));
+            return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * Focus picks the leader. Gaining it may start a takeover claim: we capture from this tick on
+     * and SyncClient holds the lines until the relay confirms, so the switch costs no input.
+     */
+    private static void reportFocus(MinecraftClient mc) {
+        boolean focused = mc.isWindowFocused();
+        if (focused == lastFocused) return;
+        lastFocused = focused;
+        if (CLIENT.setFocused(focused)) {
+            FollowerInput.clear();
+            onBecameLeader();
+        }
+    }
+
+    /** Stop holding the previous leader's keys, then announce our own key table and state. */
+    private static void onBecameLeader() {
+        MinecraftClient mc = MinecraftClient.getInstance();
+        if (mc != null) mc.execute(() -> {
+            KeyTable.releaseAll();
+            KeyTable.reset();
+            ClickStream.reset();
+            announceState(mc);
+        });
+    }
+
+    /**
+     * Leader: our screen and hotbar, so the relay's state cache (pushed to joining followers)
+     * is right after a relay restart or a leader change, not only after our next keypress.
+     */
+    private static void announceState(MinecraftClient mc) {
+        if (!shouldSendNow() || mc.player == null) return;
+        Screen s = mc.currentScreen;
+        if (s instanceof InventoryScreen) sendToServer("OPEN_INV");
+        else if (s instanceof GameMenuScreen) sendToServer("OPEN_MENU");
+        else if (s instanceof ChatScreen) {
+            String cur = readChatBuffer(mc);
+            sendToServer(cur != null && cur.startsWith("/") ? "OPEN_CMD" : "OPEN_CHAT");
+            lastChatSentLeader = null; // next tick sends the buffer
+        } else if (s == null) {
+            sendToServer("CLOSE_SCREEN"); // followers may still show the previous leader's screen
         }
+        sendToServer("HBAR_" + getSelectedHotbarSlot(mc));
+    }
+
+    /** Follower: run an apply on the main thread without echoing, and count it. */
+    private static void applyOnMain(MinecraftClient mc, MessageType type, Runnable apply) {
+        long receivedAt = SyncEvents.applyEnabled() ? System.nanoTime() : 0L;
+        mc.execute(() -> {
+            SyncEvents.Apply ev = SyncEvents.apply(receivedAt);
+            suppressSending(apply);
+            SyncStats.applied(type);
+            SyncEvents.end(ev, type);
+        });
     }
 
     /* ========================================================= */
@@ -440,17 +528,21 @@ public final class NetworkClient {
                     }
                 }
                 case "OPEN_CHAT" -> {
+                    if (mc.currentScreen instanceof ChatScreen) return; // join snapshot after a replayed open
                     Screen s = newChatScreen("", false);
                     if (s != null) mc.setScreen(s);
                 }
                 case "OPEN_CMD" -> {
+                    if (mc.currentScreen instanceof ChatScreen) return;
                     Screen s = newChatScreen("/", true);
                     if (s != null) mc.setScreen(s);
                 }
-                case "OPEN_MENU" -> mc.setScreen(new GameMenuScreen(true));
+                case "OPEN_MENU" -> {
+                    if (!(mc.currentScreen instanceof GameMenuScreen)) mc.setScreen(new GameMenuScreen(true));
+                }
             }
         } catch (Throwable t) {
-            System.out.println("[InputSync] applyOpen failed: " + t);
+            SyncLog.failed("applyOpen", t, "msg", msg);
         }
     }
 
@@ -489,7 +581,35 @@ public final class NetworkClient {
             SlotActionType type = SlotActionType.values()[Math.max(0, Math.min(typeOrd, SlotActionType.values().length - 1))];
             mc.interactionManager.clickSlot(syncId, slotId, button, type, mc.player);
         } catch (Throwable t) {
-            System.out.println("[InputSync] applyInvClick failed: " + t);
+            SyncLog.failed("applyInvClick", t, "msg", msg);
+        }
+    }
+
+    /** One main-thread task and one syncId check for the whole batch. */
+    private static void applyInvBatch(MinecraftClient mc, String msg) {
+        try {
+            int sep = msg.indexOf('_', "INVB_".length());
+            if (sep < 0) return;
+            int syncId = Integer.parseInt(msg.substring("INVB_".length(), sep));
+
+            if (mc.player == null || mc.interactionManager == null) return;
+            if (!(mc.currentScreen instanceof HandledScreen<?> hs)) return;
+
+            ScreenHandler handler = hs.getScreenHandler();
+            if (handler == null || handler.syncId != syncId) return;
+
+            SlotActionType[] types = SlotActionType.values();
+            for (String click : msg.substring(sep + 1).split(",")) {
+                String[] p = click.split(":");
+                if (p.length < 3) continue;
+                int slotId = Integer.parseInt(p[0]);
+                int button = Integer.parseInt(p[1]);
+                int typeOrd = Integer.parseInt(p[2]);
+                SlotActionType type = types[Math.max(0, Math.min(typeOrd, types.length - 1))];
+                mc.interactionManager.clickSlot(syncId, slotId, button, type, mc.player);
+            }
+        } catch (Throwable t) {
+            SyncLog.failed("applyInvBatch", t, "len", msg.length());
         }
     }
 
@@ -522,7 +642,7 @@ public final class NetworkClient {
             // Only move cursor if we find legit methods. NO field-clobber fallback.
             forceCursorToEndIfPossible(tf, text.length());
         } catch (Throwable t) {
-            System.out.println("[InputSync] applyChatSet failed: " + t);
+            SyncLog.failed("applyChatSet", t);
         }
     }
 
@@ -548,7 +668,7 @@ public final class NetworkClient {
 
             mc.setScreen(null);
         } catch (Throwable t) {
-            System.out.println("[InputSync] applyChatSend failed: " + t);
+            SyncLog.failed("applyChatSend", t);
         }
     }
 
@@ -714,11 +834,11 @@ public final class NetworkClient {
         dumpPackedTypesOnceForScreen(s);
 
         if (msg.startsWith("UI_KEYDOWN_") || msg.startsWith("UI_KEYUP_")) {
-            System.out.println("[InputSync] " + (msg.startsWith("UI_KEYDOWN_") ? "UI_KEYDOWN" : "UI_KEYUP") + " replay failed (no matching signature)");
+            SyncLog.info("ui.replay", "UI replay failed (no matching signature)", "event", msg.startsWith("UI_KEYDOWN_") ? "UI_KEYDOWN" : "UI_KEYUP");
         } else if (msg.startsWith("UI_CHAR_")) {
-            System.out.println("[InputSync] UI_CHAR replay failed (no matching signature)");
+            SyncLog.info("ui.replay", "UI replay failed (no matching signature)", "event", "UI_CHAR");
         } else if (msg.startsWith("UI_CLICK_") || msg.startsWith("UI_RELEASE_")) {
-            System.out.println("[InputSync] " + (msg.startsWith("UI_CLICK_") ? "UI_CLICK" : "UI_RELEASE") + " replay failed (no matching signature)");
+            SyncLog.info("ui.replay", "UI replay failed (no matching signature)", "event", msg.startsWith("UI_CLICK_") ? "UI_CLICK" : "UI_RELEASE");
         }
     }
 
@@ -728,17 +848,19 @@ public final class NetworkClient {
 
     private static void dumpUiCandidates(Screen s) {
         try {
-            System.out.println("========== [InputSync] UI CANDIDATE METHODS ==========");
-            System.out.println("Screen class = " + s.getClass().getName());
+            List<String> out = new ArrayList<>();
+            out.add("========== [InputSync] UI CANDIDATE METHODS ==========");
+            out.add("Screen class = " + s.getClass().getName());
 
-            dumpCandidatesFromClass(s.getClass(), true);
-            dumpCandidatesFromClass(s.getClass(), false);
+            dumpCandidatesFromClass(out, s.getClass(), true);
+            dumpCandidatesFromClass(out, s.getClass(), false);
 
-            System.out.println("========== [InputSync] END UI CANDIDATE METHODS ==========");
+            out.add("========== [InputSync] END UI CANDIDATE METHODS ==========");
+            SyncLog.block("dump.ui", out);
         } catch (Throwable ignored) {}
     }
 
-    private static void dumpCandidatesFromClass(Class<?> c, boolean pub) {
+    private static void dumpCandidatesFromClass(List<String> out, Class<?> c, boolean pub) {
         Method[] ms = pub ? c.getMethods() : c.getDeclaredMethods();
         for (Method m : ms) {
             int pc = m.getParameterCount();
@@ -751,7 +873,7 @@ public final class NetworkClient {
             boolean scrollLegacy = (pc == 4 && pt[0] == double.class && pt[1] == double.class && pt[2] == double.class && pt[3] == double.class);
 
             if (packed || legacyKey || legacyChar || moved || scrollLegacy) {
-                System.out.println("  " + (pub ? "" : "(decl) ") + m.toGenericString());
+                out.add("  " + (pub ? "" : "(decl) ") + m.toGenericString());
             }
         }
     }
@@ -766,14 +888,15 @@ public final class NetworkClient {
             if (handler == null) return;
 
             Class<?> packed = handler.getParameterTypes()[0];
+            List<String> out = new ArrayList<>();
 
-            System.out.println("========== [InputSync] PACKED TYPE DUMP ==========");
-            System.out.println("Screen = " + name);
-            System.out.println("Handler = " + handler.toGenericString());
-            System.out.println("PACKED = " + packed.getName());
+            out.add("========== [InputSync] PACKED TYPE DUMP ==========");
+            out.add("Screen = " + name);
+            out.add("Handler = " + handler.toGenericString());
+            out.add("PACKED = " + packed.getName());
 
             for (Constructor<?> c : packed.getDeclaredConstructors()) {
-                System.out.println("  PCTOR " + c.toGenericString());
+                out.add("  PCTOR " + c.toGenericString());
             }
 
             Class<?> payload = null;
@@ -786,25 +909,26 @@ public final class NetworkClient {
             }
 
             if (payload != null) {
-                System.out.println("PAYLOAD = " + payload.getName());
+                out.add("PAYLOAD = " + payload.getName());
 
                 for (Constructor<?> c : payload.getDeclaredConstructors()) {
-                    System.out.println("  CTOR " + c.toGenericString());
+                    out.add("  CTOR " + c.toGenericString());
                 }
 
-                System.out.println("-- PAYLOAD METHODS (declared) --");
+                out.add("-- PAYLOAD METHODS (declared) --");
                 for (Method m : payload.getDeclaredMethods()) {
-                    System.out.println("  " + m.toGenericString());
+                    out.add("  " + m.toGenericString());
                 }
 
-                System.out.println("-- PAYLOAD METHODS (public) --");
+                out.add("-- PAYLOAD METHODS (public) --");
                 for (Method m : payload.getMethods()) {
                     if (m.getDeclaringClass() == Object.class) continue;
-                    System.out.println("  " + m.toGenericString());
+                    out.add("  " + m.toGenericString());
                 }
             }
 
-            System.out.println("========== [InputSync] END PACKED TYPE DUMP ==========");
+            out.add("========== [InputSync] END PACKED TYPE DUMP ==========");
+            SyncLog.block("dump.packed", out);
         } catch (Throwable ignored) {}
     }
 
@@ -877,10 +1001,10 @@ public final class NetworkClient {
                 }
 
                 if (chatTextFieldField != null) {
-                    System.out.println("[InputSync] Chat text field locked to: " + chatTextFieldField.getName() +
-                            " -> " + chatTextFieldField.getType().getName());
+                    SyncLog.info("chat.field", "Chat text field locked", "field", chatTextFieldField.getName(),
+                            "type", chatTextFieldField.getType().getName());
                 } else {
-                    System.out.println("[InputSync] Chat text field NOT FOUND");
+                    SyncLog.info("chat.field", "Chat text field NOT FOUND", "screen", owner);
                 }
             }
 
@@ -918,222 +1042,78 @@ public final class NetworkClient {
 
     private static int getHoveredSlotId(HandledScreen<?> hs) {
         try {
-            if (handledHoveredSlotField == null) {
-                for (Class<?> cur = hs.getClass(); cur != null && cur != Object.class; cur = cur.getSuperclass()) {
-                    for (Field f : cur.getDeclaredFields()) {
-                        if ((f.getModifiers() & Modifier.STATIC) != 0) continue;
-                        if (!Slot.class.isAssignableFrom(f.getType())) continue;
-                        f.setAccessible(true);
-                        handledHoveredSlotField = f;
-                        break;
-                    }
-                    if (handledHoveredSlotField != null) break;
-                }
-            }
-
-            if (handledHoveredSlotField != null) {
-                handledHoveredSlotField.setAccessible(true);
-                Slot sl = (Slot) handledHoveredSlotField.get(hs);
-                if (sl != null) return sl.id;
-            }
+            Slot sl = ((HandledScreenAccessor) hs).inputsync$getFocusedSlot();
+            if (sl != null) return sl.id;
         } catch (Throwable ignored) {}
         return -999;
     }
 
-    private static int slotIdFromMouse(HandledScreen<?> hs, double mouseX, double mouseY) {
-        try {
-            int guiLeft = getHandledGuiX(hs);
-            int guiTop = getHandledGuiY(hs);
+    /* ========================================================= */
+    /* ===================== STATE ============================= */
+    /* ========================================================= */
 
-            ScreenHandler h = hs.getScreenHandler();
-            if (h == null) return -999;
+    /** Leader: encodes the current input state as a MOVE_ line straight into {@code out}, no objects. */
+    private static boolean captureMove(MinecraftClient mc, CaptureRing out) {
+        if (mc.player == null) return false;
 
-            double rx = mouseX - guiLeft;
-            double ry = mouseY - guiTop;
+        float fwd = (mc.options.forwardKey.isPressed() ? 1.0f : 0.0f) + (mc.options.backKey.isPressed() ? -1.0f : 0.0f);
+        float str = (mc.options.rightKey.isPressed() ? 1.0f : 0.0f) + (mc.options.leftKey.isPressed() ? -1.0f : 0.0f);
 
-            for (Slot sl : h.slots) {
-                int sx = sl.x;
-                int sy = sl.y;
-                if (rx >= sx && rx < sx + 16 && ry >= sy && ry < sy + 16) {
-                    return sl.id;
-                }
-            }
+        boolean jump = mc.options.jumpKey.isPressed();
+        boolean sneak = mc.options.sneakKey.isPressed();
+        boolean sprint = mc.options.sprintKey.isPressed() || mc.player.isSprinting();
 
-            return -999;
-        } catch (Throwable ignored) {
-            return -999;
+        boolean attackHeld = false;
+        boolean useHeld = false;
+        if (mc.currentScreen == null) {
+            attackHeld = InputCapture.isButtonHeld(GLFW.GLFW_MOUSE_BUTTON_LEFT);
+            useHeld = InputCapture.isButtonHeld(GLFW.GLFW_MOUSE_BUTTON_RIGHT);
         }
-    }
-
-    private static int getHandledGuiX(HandledScreen<?> hs) {
-        if (handledXField == null) findHandledGuiFields(hs);
-        try {
-            if (handledXField != null) return handledXField.getInt(hs);
-        } catch (Throwable ignored) {}
-        return 0;
-    }
-
-    private static int getHandledGuiY(HandledScreen<?> hs) {
-        if (handledYField == null) findHandledGuiFields(hs);
-        try {
-            if (handledYField != null) return handledYField.getInt(hs);
-        } catch (Throwable ignored) {}
-        return 0;
-    }
-
-    private static void findHandledGuiFields(HandledScreen<?> hs) {
-        try {
-            Field bestX = null, bestY = null;
-
-            for (Class<?> cur = hs.getClass(); cur != null && cur != Object.class; cur = cur.getSuperclass()) {
-                for (Field f : cur.getDeclaredFields()) {
-                    if ((f.getModifiers() & Modifier.STATIC) != 0) continue;
-                    if (f.getType() != int.class) continue;
-                    f.setAccessible(true);
 
-                    int v = f.getInt(hs);
-                    if (v < 0 || v > 5000) continue;
-
-                    if (bestX == null) bestX = f;
-                    else if (bestY == null && f != bestX) bestY = f;
-
-                    if (bestX != null && bestY != null) break;
-                }
-                if (bestX != null && bestY != null) break;
-            }
-
-            handledXField = bestX;
-            handledYField = bestY;
-        } catch (Throwable ignored) {}
+        return MoveState.encode(out, mc.player.getYaw(), mc.player.getPitch(), fwd, str,
+                jump, sneak, sprint, attackHeld, useHeld, getSelectedHotbarSlot(mc), hasCap(Protocol.CLK));
     }
 
-    /* ========================================================= */
-    /* ===================== STATE ============================= */
-    /* ========================================================= */
-
     /**
-     * MOVE_yaw_pitch_fwd_strafe_jump_sneak_sprint_attackHeld_useHeld_hotbar
+     * Follower: runs every tick, so only touch what differs from the live player.
+     * Movement, jump/sneak/sprint and camera are not applied here: FollowerInput feeds them
+     * into the player's Input earlier in the same tick (and reasserts the camera the same way).
+     * Hotbar is compared with the last slot applied to this player entity (a respawn or
+     * dimension change makes a new one, which gets the slot again); sprint with the player.
      */
-    private static final class MoveState {
-        final float yaw, pitch;
-        final float forward, strafe;
-        final boolean jump, sneak, sprint, attackHeld, useHeld;
-        final int hotbar;
-
-        private MoveState(float yaw, float pitch, float forward, float strafe,
-                          boolean jump, boolean sneak, boolean sprint,
-                          boolean attackHeld, boolean useHeld, int hotbar) {
-            this.yaw = yaw;
-            this.pitch = pitch;
-            this.forward = forward;
-            this.strafe = strafe;
-            this.jump = jump;
-            this.sneak = sneak;
-            this.sprint = sprint;
-            this.attackHeld = attackHeld;
-            this.useHeld = useHeld;
-            this.hotbar = hotbar;
-        }
-
-        static MoveState capture(MinecraftClient mc) {
-            if (mc.player == null) return null;
-
-            float yaw = mc.player.getYaw();
-            float pitch = mc.player.getPitch();
-
-            float fwd = (mc.options.forwardKey.isPressed() ? 1.0f : 0.0f) + (mc.options.backKey.isPressed() ? -1.0f : 0.0f);
-            float str = (mc.options.rightKey.isPressed() ? 1.0f : 0.0f) + (mc.options.leftKey.isPressed() ? -1.0f : 0.0f);
-
-            boolean jump = mc.options.jumpKey.isPressed();
-            boolean sneak = mc.options.sneakKey.isPressed();
-            boolean sprint = mc.options.sprintKey.isPressed() || mc.player.isSprinting();
-
-            boolean attackHeld = false;
-            boolean useHeld = false;
-            try {
-                if (mc.currentScreen == null) {
-                    long h = mc.getWindow().getHandle();
-                    attackHeld = GLFW.glfwGetMouseButton(h, GLFW.GLFW_MOUSE_BUTTON_LEFT) == GLFW.GLFW_PRESS;
-                    useHeld = GLFW.glfwGetMouseButton(h, GLFW.GLFW_MOUSE_BUTTON_RIGHT) == GLFW.GLFW_PRESS;
-                }
-            } catch (Throwable ignored) {}
-
-            int hotbar = getSelectedHotbarSlot(mc);
-
-            return new MoveState(yaw, pitch, fwd, str, jump, sneak, sprint, attackHeld, useHeld, hotbar);
-        }
-
-        String encode() {
-            return String.format(Locale.ROOT,
-                    "MOVE_%f_%f_%f_%f_%d_%d_%d_%d_%d_%d",
-                    yaw, pitch, forward, strafe,
-                    jump ? 1 : 0,
-                    sneak ? 1 : 0,
-                    sprint ? 1 : 0,
-                    attackHeld ? 1 : 0,
-                    useHeld ? 1 : 0,
-                    hotbar
-            );
-        }
+    private static void applyMove(MinecraftClient mc, MoveState st) {
+        if (mc.player == null) return;
 
-        static MoveState parse(String msg) {
-            try {
-                String[] p = msg.split("_");
-                return new MoveState(
-                        Float.parseFloat(p[1]),
-                        Float.parseFloat(p[2]),
-                        Float.parseFloat(p[3]),
-                        Float.parseFloat(p[4]),
-                        "1".equals(p[5]),
-                        "1".equals(p[6]),
-                        "1".equals(p[7]),
-                        "1".equals(p[8]),
-                        "1".equals(p[9]),
-                        Integer.parseInt(p[10])
-                );
-            } catch (Throwable t) {
-                return null;
-            }
+        if (st.hotbar != lastAppliedHotbar || mc.player.getId() != lastAppliedHotbarEntity) {
+            setSelectedHotbarSlot(mc, st.hotbar);
         }
 
-        void apply(MinecraftClient mc) {
-            if (mc.player == null) return;
-
-            mc.player.setYaw(yaw);
-            mc.player.setPitch(pitch);
-
-            setSelectedHotbarSlot(mc, hotbar);
-
-            setKey(mc.options.forwardKey, forward > 0.0f);
-            setKey(mc.options.backKey, forward < 0.0f);
-            setKey(mc.options.rightKey, strafe > 0.0f);
-            setKey(mc.options.leftKey, strafe < 0.0f);
-            setKey(mc.options.jumpKey, jump);
-            setKey(mc.options.sneakKey, sneak);
-
-            setKey(mc.options.sprintKey, sprint);
-            mc.player.setSprinting(sprint && (Math.abs(forward) > 0.0f) && !sneak);
+        boolean sprinting = st.sprint && (Math.abs(st.forward) > 0.0f) && !st.sneak;
+        if (mc.player.isSprinting() != sprinting) mc.player.setSprinting(sprinting);
 
-            // Do NOT hold these keys down on followers
-            setKey(mc.options.useKey, false);
-            setKey(mc.options.attackKey, false);
+        // Do NOT hold these keys down on followers
+        setKeyIfChanged(mc.options.useKey, false);
+        setKeyIfChanged(mc.options.attackKey, false);
 
-            if (mc.currentScreen == null) {
-                if (attackHeld) {
-                    tickBreakProgress(mc);
-                } else {
-                    stopBreaking(mc);
-                }
-
-                if (useHeld && !lastUseHeld) doUsePulse(mc);
-                if (attackHeld && !lastAttackHeld) doAttackPulse(mc);
+        if (mc.currentScreen == null) {
+            if (st.attackHeld) {
+                tickBreakProgress(mc);
             } else {
                 stopBreaking(mc);
             }
 
-            lastAttackHeld = attackHeld;
-            lastUseHeld = useHeld;
+            // Clicks come from CLK_ when the leader sends them and the relay carries them to us;
+            // held-bit edges are the fallback
+            if (!st.clickStream || !hasCap(Protocol.CLK)) {
+                if (st.useHeld && !lastUseHeld) doUsePulse(mc);
+                if (st.attackHeld && !lastAttackHeld) doAttackPulse(mc);
+            }
+        } else {
+            stopBreaking(mc);
         }
+
+        lastAttackHeld = st.attackHeld;
+        lastUseHeld = st.useHeld;
     }
 
     private static void tickBreakProgress(MinecraftClient mc) {
@@ -1158,6 +1138,12 @@ public final class NetworkClient {
         } catch (Throwable ignored) {}
     }
 
+    /** Follower: one leader click edge from CLK_, in order. Releases are carried by MOVE_'s held bits. */
+    private static void replayClick(MinecraftClient mc, char edge) {
+        if (edge == ClickStream.ATTACK_PRESS) doAttackPulse(mc);
+        else if (edge == ClickStream.USE_PRESS) doUsePulse(mc);
+    }
+
     private static void doAttackPulse(MinecraftClient mc) {
         try {
             if (mc.player == null || mc.interactionManager == null) return;
@@ -1172,7 +1158,7 @@ public final class NetworkClient {
                 mc.player.swingHand(Hand.MAIN_HAND);
             }
         } catch (Throwable t) {
-            System.out.println("[InputSync] doAttackPulse failed: " + t);
+            SyncLog.failed("doAttackPulse", t);
         }
     }
 
@@ -1196,7 +1182,7 @@ public final class NetworkClient {
             mc.interactionManager.interactItem(mc.player, Hand.MAIN_HAND);
             mc.player.swingHand(Hand.MAIN_HAND);
         } catch (Throwable t) {
-            System.out.println("[InputSync] doUsePulse failed: " + t);
+            SyncLog.failed("doUsePulse", t);
         }
     }
 
@@ -1205,74 +1191,62 @@ public final class NetworkClient {
     /* ========================================================= */
 
     private static int getSelectedHotbarSlot(MinecraftClient mc) {
-        try {
-            if (mc.player == null) return 0;
-            Object inv = mc.player.getInventory();
-
-            if (invSelectedSlotField == null) {
-                try {
-                    Field f = inv.getClass().getDeclaredField("selectedSlot");
-                    f.setAccessible(true);
-                    invSelectedSlotField = f;
-                } catch (NoSuchFieldException e) {
-                    for (Field f : inv.getClass().getDeclaredFields()) {
-                        if (f.getType() != int.class) continue;
-                        if ((f.getModifiers() & Modifier.STATIC) != 0) continue;
-                        f.setAccessible(true);
-                        int v = f.getInt(inv);
-                        if (v >= 0 && v <= 8) { invSelectedSlotField = f; break; }
-                    }
-                }
-            }
-
-            if (invSelectedSlotField != null) {
-                int v = invSelectedSlotField.getInt(inv);
-                if (v >= 0 && v <= 8) return v;
-            }
-        } catch (Throwable ignored) {}
-        return 0;
+        return mc.player == null ? 0 : mc.player.getInventory().getSelectedSlot();
     }
 
+    /** Follower (game thread): also remembered as the last applied slot, see applyMove. */
     private static void setSelectedHotbarSlot(MinecraftClient mc, int slot) {
-        try {
-            if (mc.player == null) return;
-            slot = Math.max(0, Math.min(8, slot));
-
-            Object inv = mc.player.getInventory();
-            if (invSelectedSlotField == null) getSelectedHotbarSlot(mc);
-            if (invSelectedSlotField != null) {
-                invSelectedSlotField.setAccessible(true);
-                invSelectedSlotField.setInt(inv, slot);
-            }
-        } catch (Throwable ignored) {}
+        if (mc.player == null) return;
+        slot = Math.max(0, Math.min(8, slot));
+        mc.player.getInventory().setSelectedSlot(slot);
+        lastAppliedHotbar = slot;
+        lastAppliedHotbarEntity = mc.player.getId();
     }
 
-    private static void setKey(KeyBinding k, boolean down) {
-        try { k.setPressed(down); } catch (Throwable ignored) {}
+    private static void setKeyIfChanged(KeyBinding k, boolean down) {
+        try { if (k.isPressed() != down) k.setPressed(down); } catch (Throwable ignored) {}
     }
 
     /* ========================================================= */
     /* ===================== BASIC HELPERS ===================== */
     /* ========================================================= */
 
+    /** Render thread only: queues a line behind the events already captured into OUT. */
     public static void sendToServer(String line) {
-        if (out != null && connected) out.println(line);
+        CLIENT.send(line);
     }
 
-    public static boolean shouldSendNow() {
-        return connected && CommandHandler.isEnabled() && isLeader &&
-                !Boolean.TRUE.equals(SUPPRESS_SEND.get());
+    /** Render thread: a line was committed to OUT. */
+    private static void published(MessageType type) {
+        CLIENT.published(type);
     }
 
-    public static void suppressSending(Runnable r) {
-        SUPPRESS_SEND.set(Boolean.TRUE);
-        try { r.run(); } finally { SUPPRESS_SEND.set(Boolean.FALSE); }
+    private static boolean hasCap(int flag) {
+        return CLIENT.hasCap(flag);
+    }
+
+    /** Header lines for the metrics overlay/dump. */
+    static List<String> describeState() {
+        return CLIENT.describe();
+    }
+
+    public static boolean isConnected() {
+        return CLIENT.isConnected();
+    }
+
+    /** Followers take movement from the leader (FollowerInput) instead of the keyboard. */
+    public static boolean isFollowing() {
+        return isConnected() && CLIENT.isEnabled() && !CLIENT.isCapturing();
     }
 
-    private static void cleanupSocket() {
-        try { if (socket != null) socket.close(); } catch (Exception ignored) {}
-        socket = null;
-        out = null;
+    public static boolean shouldSendNow() {
+        return isConnected() && CLIENT.isEnabled() && CLIENT.isCapturing() && !suppressSend;
+    }
+
+    public static void suppressSending(Runnable r) {
+        boolean prev = suppressSend;
+        suppressSend = true;
+        try { r.run(); } finally { suppressSend = prev; }
     }
 
     private static int safeParseInt(String s, int def) {
@@ -0,0 +1,179 @@
+package net.synchole.inputsync;
+
+import net.minecraft.client.MinecraftClient;
+
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+
+/**
+ * Low-power follower mode, for hosts running many clients nobody is looking at.
+ *
+ * Entered while this client is a follower and its window is not focused; left on ROLE_LEADER or
+ * when the window gets focus (someone wants to look at it). While on, it caps the frame rate
+ * (InactivityFpsLimiterMixin), skips world rendering (GameRendererMixin), caps the effective
+ * render distance, also in the client settings sent to the server so it streams fewer chunks
+ * (GameOptionsMixin), and stops spawning and ticking particles (ParticleManagerMixin). Ticks are
+ * untouched, so MOVE apply and reliable events stay tick-accurate.
+ *
+ * The player's GameOptions are never changed, so nothing low-power ends up in options.txt
+ * (options screen, F11, key rebinds and quitting all write it); the mixins adjust what the
+ * options report instead.
+ *
+ * Reports process CPU (percent of one core) in normal vs low-power mode in the metrics overlay.
+ *
+ * Config (system properties):
+ *   inputsync.lowPower           = auto (default) | off
+ *   inputsync.lowPower.fps       = frame cap while on (default 20: one frame per tick)
+ *   inputsync.lowPower.skipWorld = skip world rendering while on (default true)
+ *   inputsync.lowPower.viewDistance = render distance cap while on, in chunks (default 2, 0 = no cap)
+ *   inputsync.lowPower.particles = keep particles while on (default false)
+ */
+public final class PowerMode {
+
+    static final boolean ENABLED = !"off".equals(System.getProperty("inputsync.lowPower", "auto").toLowerCase(Locale.ROOT));
+    private static final int FPS = Integer.getInteger("inputsync.lowPower.fps", 20);
+    private static final boolean SKIP_WORLD = Boolean.parseBoolean(System.getProperty("inputsync.lowPower.skipWorld", "true"));
+    private static final int VIEW_DISTANCE = Integer.getInteger("inputsync.lowPower.viewDistance", 2);
+    private static final boolean PARTICLES = Boolean.parseBoolean(System.getProperty("inputsync.lowPower.particles", "false"));
+
+    /** CPU sample window, in ticks */
+    private static final int CPU_WINDOW_TICKS = 40;
+
+    /** Set from the IO thread on ROLE_ messages */
+    private static volatile boolean follower = false;
+
+    /** Render thread only */
+    private static boolean on = false;
+    private static volatile boolean skipWorld = false;
+    private static volatile int frameCap = 0;
+    private static volatile int viewDistanceCap = 0;
+    private static volatile boolean skipParticles = false;
+
+    /** CPU accounting (render thread only) */
+    private static final com.sun.management.OperatingSystemMXBean OS = osBean();
+    private static long cpuMarkNanos = -1L, wallMarkNanos = 0L;
+    private static int cpuTicks = 0;
+    private static double normalPct = -1.0, lowPct = -1.0;
+
+    private PowerMode() {}
+
+    static void setFollower(boolean f) {
+        follower = f;
+    }
+
+    /** GameRendererMixin: skip this frame's world pass. */
+    public static boolean skipWorld() {
+        return skipWorld;
+    }
+
+    /** InactivityFpsLimiterMixin: max frames per second, 0 = no cap of ours. */
+    public static int frameCap() {
+        return frameCap;
+    }
+
+    /** GameOptionsMixin: max render distance in chunks, 0 = no cap of ours. */
+    public static int viewDistanceCap() {
+        return viewDistanceCap;
+    }
+
+    /** ParticleManagerMixin: spawn and tick no particles. */
+    public static boolean skipParticles() {
+        return skipParticles;
+    }
+
+    /** Every client tick, before anything is applied. */
+    static void tick(MinecraftClient mc) {
+        sampleCpu();
+        if (!ENABLED) return;
+
+        boolean want = follower && NetworkClient.isConnected() && !mc.isWindowFocused();
+        if (want != on) {
+            if (want) enter(mc);
+            else leave(mc);
+        }
+
+        // The world pass is skipped, so the crosshair target (used by follower use/attack) is not
+        // refreshed by rendering; keep it current for the apply that follows.
+        if (on && skipWorld && mc.gameRenderer != null) {
+            try { mc.gameRenderer.updateCrosshairTarget(1.0f); } catch (Throwable ignored) {}
+        }
+    }
+
+    private static void enter(MinecraftClient mc) {
+        frameCap = FPS;
+        skipWorld = SKIP_WORLD;
+        viewDistanceCap = Math.max(0, VIEW_DISTANCE);
+        skipParticles = !PARTICLES;
+        on = true;
+        markCpu();
+        resendSettings(mc);
+        System.out.println("[InputSync] low power ON (" + FPS + " fps" + (SKIP_WORLD ? ", world not rendered" : "")
+                + (VIEW_DISTANCE > 0 ? ", view distance " + VIEW_DISTANCE : "") + (PARTICLES ? "" : ", no particles") + ")");
+    }
+
+    private static void leave(MinecraftClient mc) {
+        frameCap = 0;
+        skipWorld = false;
+        viewDistanceCap = 0;
+        skipParticles = false;
+        on = false;
+        markCpu();
+        resendSettings(mc);
+        System.out.println("[InputSync] low power OFF (" + describeCpu() + ")");
+    }
+
+    /** The server only learns the (capped) view distance from a client settings packet. */
+    private static void resendSettings(MinecraftClient mc) {
+        if (VIEW_DISTANCE <= 0 || mc.options == null) return;
+        try { mc.options.sendClientSettings(); } catch (Throwable ignored) {}
+    }
+
+    /* ===================== CPU ===================== */
+
+    private static com.sun.management.OperatingSystemMXBean osBean() {
+        try {
+            return (com.sun.management.OperatingSystemMXBean) ManagementFactory.getOperatingSystemMXBean();
+        } catch (Throwable t) {
+            return null;
+        }
+    }
+
+    /** Start a fresh window (mode changed: the old window mixes both). */
+    private static void markCpu() {
+        if (OS == null) return;
+        cpuMarkNanos = OS.getProcessCpuTime();
+        wallMarkNanos = System.nanoTime();
+        cpuTicks = 0;
+    }
+
+    private static void sampleCpu() {
+        if (OS == null) return;
+        if (cpuMarkNanos < 0L) {
+            markCpu();
+            return;
+        }
+        if (++cpuTicks < CPU_WINDOW_TICKS) return;
+
+        long cpu = OS.getProcessCpuTime();
+        long wall = System.nanoTime();
+        if (cpu >= 0L && wall > wallMarkNanos) {
+            double pct = 100.0 * (cpu - cpuMarkNanos) / (wall - wallMarkNanos);
+            if (on) lowPct = lowPct < 0 ? pct : lowPct * 0.7 + pct * 0.3;
+            else normalPct = normalPct < 0 ? pct : normalPct * 0.7 + pct * 0.3;
+        }
+        markCpu();
+    }
+
+    private static String describeCpu() {
+        String n = normalPct < 0 ? "-" : String.format(Locale.ROOT, "%.0f%%", normalPct);
+        String l = lowPct < 0 ? "-" : String.format(Locale.ROOT, "%.0f%%", lowPct);
+        String s = "cpu normal " + n + " low " + l + " of a core";
+        if (normalPct > 0 && lowPct >= 0) s += String.format(Locale.ROOT, ", saving %.0f%%", normalPct - lowPct);
+        return s;
+    }
+
+    static String describe() {
+        if (!ENABLED) return "power off";
+        return "power " + (on ? "LOW" : "normal") + "  " + describeCpu();
+    }
+}
@@ -0,0 +1,162 @@
+package net.synchole.inputsync;
+
+import net.minecraft.client.gui.screen.ingame.HandledScreen;
+import net.minecraft.screen.ScreenHandler;
+import net.minecraft.screen.slot.Slot;
+import net.synchole.inputsync.mixin.HandledScreenAccessor;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.IntConsumer;
+
+/**
+ * Slot hit-testing for the open HandledScreen.
+ *
+ * Built once when the screen is initialised (and again on resize) as a grid of 16px cells over
+ * the slot bounds, each cell listing the slots that overlap it (any number: modded layouts stack
+ * slots). A lookup is one cell read plus a few rectangle checks, in handler.slots order, so it
+ * picks the same slot as the linear scan it replaces.
+ *
+ * Slot positions are snapshotted; if a hit no longer matches the live slot (creative tabs move
+ * slots around) the index is rebuilt on the spot. A miss falls back to that linear scan over the
+ * live slots, so the index only ever makes a hit faster, never different.
+ */
+final class SlotIndex {
+
+    private static final int CELL = 16;
+    private static final int SLOT_SIZE = 16;
+
+    /** Render thread only */
+    private static SlotIndex current = null;
+
+    private final HandledScreen<?> screen;
+    private final int guiX, guiY;
+    private final int slotCount;
+
+    private final int minX, minY, cols, rows;
+    /** Cell k lists entries[offsets[k] .. offsets[k + 1]): indexes into handler.slots, ascending */
+    private final int[] offsets;
+    private final int[] entries;
+    /** Snapshotted slot x/y, by index into handler.slots */
+    private final int[] sx, sy;
+
+    private SlotIndex(HandledScreen<?> screen, int guiX, int guiY, List<Slot> slots) {
+        this.screen = screen;
+        this.guiX = guiX;
+        this.guiY = guiY;
+        this.slotCount = slots.size();
+
+        sx = new int[slotCount];
+        sy = new int[slotCount];
+        int loX = Integer.MAX_VALUE, loY = Integer.MAX_VALUE, hiX = Integer.MIN_VALUE, hiY = Integer.MIN_VALUE;
+        for (int i = 0; i < slotCount; i++) {
+            Slot sl = slots.get(i);
+            sx[i] = sl.x;
+            sy[i] = sl.y;
+            loX = Math.min(loX, sl.x);
+            loY = Math.min(loY, sl.y);
+            hiX = Math.max(hiX, sl.x + SLOT_SIZE);
+            hiY = Math.max(hiY, sl.y + SLOT_SIZE);
+        }
+
+        if (slotCount == 0) {
+            minX = minY = cols = rows = 0;
+            offsets = new int[1];
+            entries = new int[0];
+            return;
+        }
+
+        minX = loX;
+        minY = loY;
+        cols = (hiX - loX + CELL - 1) / CELL;
+        rows = (hiY - loY + CELL - 1) / CELL;
+        offsets = new int[cols * rows + 1];
+
+        // Pass 1: slots per cell (counted at k + 1), then prefix sums into start offsets
+        for (int i = 0; i < slotCount; i++) forEachCell(i, k -> offsets[k + 1]++);
+        for (int k = 0; k < cols * rows; k++) offsets[k + 1] += offsets[k];
+
+        // Pass 2: fill in slot order, so each cell lists its slots ascending
+        entries = new int[offsets[cols * rows]];
+        int[] fill = Arrays.copyOf(offsets, cols * rows);
+        for (int i = 0; i < slotCount; i++) {
+            int slot = i;
+            forEachCell(i, k -> entries[fill[k]++] = slot);
+        }
+    }
+
+    private void forEachCell(int i, IntConsumer action) {
+        int c0 = (sx[i] - minX) / CELL, c1 = (sx[i] + SLOT_SIZE - 1 - minX) / CELL;
+        int r0 = (sy[i] - minY) / CELL, r1 = (sy[i] + SLOT_SIZE - 1 - minY) / CELL;
+        for (int r = r0; r <= r1; r++) {
+            for (int c = c0; c <= c1; c++) action.accept(r * cols + c);
+        }
+    }
+
+    /** Called on screen init/resize (ScreenEvents.AFTER_INIT). */
+    static void build(HandledScreen<?> hs) {
+        current = create(hs);
+    }
+
+    static void clear() {
+        current = null;
+    }
+
+    private static SlotIndex create(HandledScreen<?> hs) {
+        ScreenHandler h = hs.getScreenHandler();
+        if (h == null) return null;
+        HandledScreenAccessor acc = (HandledScreenAccessor) hs;
+        return new SlotIndex(hs, acc.inputsync$getX(), acc.inputsync$getY(), h.slots);
+    }
+
+    /** Slot id under the given GUI-scaled mouse position, or -999 if none. */
+    static int hit(HandledScreen<?> hs, double mouseX, double mouseY) {
+        ScreenHandler h = hs.getScreenHandler();
+        if (h == null) return -999;
+
+        SlotIndex idx = current;
+        HandledScreenAccessor acc = (HandledScreenAccessor) hs;
+        if (idx == null || idx.screen != hs || idx.slotCount != h.slots.size()
+                || idx.guiX != acc.inputsync$getX() || idx.guiY != acc.inputsync$getY()) {
+            idx = current = create(hs);
+            if (idx == null) return -999;
+        }
+
+        double rx = mouseX - idx.guiX, ry = mouseY - idx.guiY;
+        int i = idx.lookup(rx, ry);
+        if (i < 0) return scan(h, rx, ry);
+
+        Slot sl = h.slots.get(i);
+        if (sl.x != idx.sx[i] || sl.y != idx.sy[i]) {
+            // Slots moved since the index was built: rebuild once and retry
+            idx = current = create(hs);
+            if (idx == null) return -999;
+            i = idx.lookup(rx, ry);
+            if (i < 0) return scan(h, rx, ry);
+            sl = h.slots.get(i);
+        }
+        return sl.id;
+    }
+
+    /** The pre-index hit test: first live slot, in handler order, under the point. */
+    private static int scan(ScreenHandler h, double rx, double ry) {
+        for (Slot sl : h.slots) {
+            if (rx >= sl.x && rx < sl.x + SLOT_SIZE && ry >= sl.y && ry < sl.y + SLOT_SIZE) return sl.id;
+        }
+        return -999;
+    }
+
+    private int lookup(double rx, double ry) {
+        if (cols == 0) return -1;
+        int c = (int) Math.floor((rx - minX) / CELL);
+        int r = (int) Math.floor((ry - minY) / CELL);
+        if (c < 0 || r < 0 || c >= cols || r >= rows) return -1;
+
+        int k = r * cols + c;
+        for (int e = offsets[k], end = offsets[k + 1]; e < end; e++) {
+            int i = entries[e];
+            if (rx >= sx[i] && rx < sx[i] + SLOT_SIZE && ry >= sy[i] && ry < sy[i] + SLOT_SIZE) return i;
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,115 @@
+package net.synchole.inputsync;
+
+import net.minecraft.client.MinecraftClient;
+import net.minecraft.client.gui.DrawContext;
+import net.synchole.inputsync.core.SyncStats;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Client-side sync report: connection state, follower apply time per tick, the age of the last
+ * MOVE and the per-type counters kept in core (SyncStats). Shown in a HUD overlay (toggle with
+ * the overlay key, F7 by default; Shift+key dumps to a file) and dumped on the relay's DUMP_METRICS.
+ */
+public final class SyncMetrics {
+
+    static final int OVERLAY_KEY = Integer.getInteger("inputsync.overlayKey", 296); // GLFW_KEY_F7
+    private static volatile boolean overlay = Boolean.getBoolean("inputsync.overlay");
+
+    /** Follower apply time (render thread only) */
+    private static long applyLastNanos, applyMaxNanos, applyWindowMaxNanos;
+    private static double applyAvgNanos;
+    private static int applyWindowTicks;
+
+    private SyncMetrics() {}
+
+    /* ===================== APPLY TIME ===================== */
+
+    /** Render thread: one follower tick of MoveState.apply. */
+    static void recordApply(long nanos) {
+        applyLastNanos = nanos;
+        applyAvgNanos = applyAvgNanos == 0 ? nanos : applyAvgNanos * 0.95 + nanos * 0.05;
+        applyWindowMaxNanos = Math.max(applyWindowMaxNanos, nanos);
+        if (++applyWindowTicks >= 100) {
+            // max over the last ~5s
+            applyMaxNanos = applyWindowMaxNanos;
+            applyWindowMaxNanos = 0L;
+            applyWindowTicks = 0;
+        }
+    }
+
+    /* ===================== REPORT ======================= */
+
+    static List<String> lines() {
+        List<String> out = new ArrayList<>(NetworkClient.describeState());
+
+        long at = SyncStats.lastMoveAtNanos();
+        String age = at == 0L ? "-" : ((System.nanoTime() - at) / 1_000_000L) + "ms";
+        out.add(String.format(Locale.ROOT, "lastMove age %s  apply %.3fms avg %.3fms max %.3fms",
+                age, applyLastNanos / 1e6, applyAvgNanos / 1e6,
+                Math.max(applyMaxNanos, applyWindowMaxNanos) / 1e6));
+        if (PowerMode.ENABLED) out.add(PowerMode.describe());
+
+        out.addAll(SyncStats.lines());
+        return out;
+    }
+
+    /* ===================== OVERLAY ====================== */
+
+    static void toggleOverlay() {
+        overlay = !overlay;
+    }
+
+    /** HUD element; registered in InputSyncMod. */
+    static void render(DrawContext ctx) {
+        if (!overlay) return;
+        MinecraftClient mc = MinecraftClient.getInstance();
+        if (mc == null || mc.textRenderer == null) return;
+
+        List<String> lines = lines();
+        int w = 0;
+        for (String l : lines) w = Math.max(w, mc.textRenderer.getWidth(l));
+        int lh = mc.textRenderer.fontHeight + 1;
+        int x = 4, y = 4;
+
+        ctx.fill(x - 2, y - 2, x + w + 2, y + lines.size() * lh + 1, 0x90000000);
+        for (String l : lines) {
+            ctx.drawTextWithShadow(mc.textRenderer, l, x, y, 0xFFFFFFFF);
+            y += lh;
+        }
+    }
+
+    /* ===================== DUMP ========================= */
+
+    /** Disk writes, off the render and IO threads (a slow disk would stall a frame or the socket) */
+    private static final ExecutorService WRITER = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "InputSync-Metrics");
+        t.setDaemon(true);
+        return t;
+    });
+
+    /** Render thread (Shift+overlay key) or IO thread (DUMP_METRICS): snapshot here, write in the background. */
+    static void dump(String sessionId) {
+        Path p = Path.of("inputsync-metrics-" + sessionId + ".txt");
+        List<String> out = new ArrayList<>();
+        out.add("# " + LocalDateTime.now());
+        out.addAll(lines());
+        WRITER.execute(() -> {
+            try {
+                Files.write(p, out, StandardCharsets.UTF_8);
+                System.out.println("[InputSync] metrics dumped to " + p.toAbsolutePath());
+            } catch (IOException e) {
+                System.out.println("[InputSync] metrics dump failed: " + e);
+            }
+        });
+    }
+}
@@ -0,0 +1,29 @@
+package net.synchole.inputsync.mixin;
+
+import net.minecraft.client.option.GameOptions;
+import net.synchole.inputsync.PowerMode;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.ModifyArg;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfoReturnable;
+
+@Mixin(GameOptions.class)
+public abstract class GameOptionsMixin {
+
+    /** Low-power follower: cap the effective render distance; the saved option is never touched. */
+    @Inject(method = "getClampedViewDistance", at = @At("RETURN"), cancellable = true)
+    private void inputsync$getClampedViewDistance(CallbackInfoReturnable<Integer> cir) {
+        int cap = PowerMode.viewDistanceCap();
+        if (cap > 0 && cir.getReturnValueI() > cap) cir.setReturnValue(cap);
+    }
+
+    /** Same cap in the client settings sent to the server, so it streams fewer chunks to us. */
+    @ModifyArg(method = "getSyncedOptions",
+            at = @At(value = "INVOKE", target = "Lnet/minecraft/network/packet/c2s/common/SyncedClientOptions;<init>"),
+            index = 1)
+    private int inputsync$syncedViewDistance(int viewDistance) {
+        int cap = PowerMode.viewDistanceCap();
+        return cap > 0 && viewDistance > cap ? cap : viewDistance;
+    }
+}
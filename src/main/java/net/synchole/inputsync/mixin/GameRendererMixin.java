@@ -0,0 +1,19 @@
+package net.synchole.inputsync.mixin;
+
+import net.minecraft.client.render.GameRenderer;
+import net.minecraft.client.render.RenderTickCounter;
+import net.synchole.inputsync.PowerMode;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
+
+@Mixin(GameRenderer.class)
+public abstract class GameRendererMixin {
+
+    /** Low-power follower: nobody is watching, skip the world pass (HUD and screens still draw). */
+    @Inject(method = "renderWorld", at = @At("HEAD"), cancellable = true)
+    private void inputsync$renderWorld(RenderTickCounter tickCounter, CallbackInfo ci) {
+        if (PowerMode.skipWorld()) ci.cancel();
+    }
+}
@@ -0,0 +1,21 @@
+package net.synchole.inputsync.mixin;
+
+import net.minecraft.client.gui.screen.ingame.HandledScreen;
+import net.minecraft.screen.slot.Slot;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.gen.Accessor;
+
+@Mixin(HandledScreen.class)
+public interface HandledScreenAccessor {
+
+    /** GUI origin (left) */
+    @Accessor("x")
+    int inputsync$getX();
+
+    /** GUI origin (top) */
+    @Accessor("y")
+    int inputsync$getY();
+
+    @Accessor("focusedSlot")
+    Slot inputsync$getFocusedSlot();
+}
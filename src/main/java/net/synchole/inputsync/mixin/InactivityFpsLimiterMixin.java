@@ -0,0 +1,19 @@
+package net.synchole.inputsync.mixin;
+
+import net.minecraft.client.option.InactivityFpsLimiter;
+import net.synchole.inputsync.PowerMode;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfoReturnable;
+
+@Mixin(InactivityFpsLimiter.class)
+public abstract class InactivityFpsLimiterMixin {
+
+    /** Low-power follower: cap the frame rate here, so the player's max-fps option is never touched. */
+    @Inject(method = "update", at = @At("RETURN"), cancellable = true)
+    private void inputsync$update(CallbackInfoReturnable<Integer> cir) {
+        int cap = PowerMode.frameCap();
+        if (cap > 0 && cir.getReturnValueI() > cap) cir.setReturnValue(cap);
+    }
+}
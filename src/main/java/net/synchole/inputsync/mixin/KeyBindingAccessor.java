@@ -0,0 +1,16 @@
+package net.synchole.inputsync.mixin;
+
+import net.minecraft.client.option.KeyBinding;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.gen.Accessor;
+
+@Mixin(KeyBinding.class)
+public interface KeyBindingAccessor {
+
+    /** Pending presses consumed by wasPressed() */
+    @Accessor("timesPressed")
+    int inputsync$getTimesPressed();
+
+    @Accessor("timesPressed")
+    void inputsync$setTimesPressed(int timesPressed);
+}
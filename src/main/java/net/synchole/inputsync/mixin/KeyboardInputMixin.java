@@ -0,0 +1,23 @@
+package net.synchole.inputsync.mixin;
+
+import net.minecraft.client.input.Input;
+import net.minecraft.client.input.KeyboardInput;
+import net.synchole.inputsync.FollowerInput;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
+
+@Mixin(KeyboardInput.class)
+public abstract class KeyboardInputMixin extends Input {
+
+    /** Follower: replace what the keyboard produced with the leader's input, same tick. */
+    @Inject(method = "tick", at = @At("TAIL"))
+    private void inputsync$tick(CallbackInfo ci) {
+        FollowerInput.State s = FollowerInput.current();
+        if (s == null) return;
+        this.playerInput = s.input;
+        this.movementVector = s.movement;
+        FollowerInput.applyCamera(s);
+    }
+}
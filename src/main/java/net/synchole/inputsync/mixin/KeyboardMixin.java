@@ -0,0 +1,25 @@
+package net.synchole.inputsync.mixin;
+
+import net.minecraft.client.Keyboard;
+import net.minecraft.client.input.CharInput;
+import net.minecraft.client.input.KeyInput;
+import net.synchole.inputsync.NetworkClient;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
+
+@Mixin(Keyboard.class)
+public abstract class KeyboardMixin {
+
+    // HEAD: intent is decided from the screen BEFORE vanilla handles the key
+    @Inject(method = "onKey", at = @At("HEAD"))
+    private void inputsync$onKey(long window, int action, KeyInput input, CallbackInfo ci) {
+        NetworkClient.onKey(input.key(), action, input.modifiers());
+    }
+
+    @Inject(method = "onChar", at = @At("HEAD"))
+    private void inputsync$onChar(long window, CharInput input, CallbackInfo ci) {
+        NetworkClient.onChar(input.codepoint());
+    }
+}
@@ -0,0 +1,28 @@
+package net.synchole.inputsync.mixin;
+
+import net.minecraft.client.Mouse;
+import net.minecraft.client.input.MouseInput;
+import net.synchole.inputsync.NetworkClient;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
+
+@Mixin(Mouse.class)
+public abstract class MouseMixin {
+
+    @Inject(method = "onCursorPos", at = @At("HEAD"))
+    private void inputsync$onCursorPos(long window, double x, double y, CallbackInfo ci) {
+        NetworkClient.onCursorPos(x, y);
+    }
+
+    @Inject(method = "onMouseButton", at = @At("HEAD"))
+    private void inputsync$onMouseButton(long window, MouseInput input, int action, CallbackInfo ci) {
+        NetworkClient.onMouseButton(input.button(), action, input.modifiers());
+    }
+
+    @Inject(method = "onMouseScroll", at = @At("HEAD"))
+    private void inputsync$onMouseScroll(long window, double horizontal, double vertical, CallbackInfo ci) {
+        NetworkClient.onMouseScroll(horizontal, vertical);
+    }
+}
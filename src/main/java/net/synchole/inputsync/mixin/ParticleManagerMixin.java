@@ -0,0 +1,25 @@
+package net.synchole.inputsync.mixin;
+
+import net.minecraft.client.particle.Particle;
+import net.minecraft.client.particle.ParticleManager;
+import net.synchole.inputsync.PowerMode;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
+
+@Mixin(ParticleManager.class)
+public abstract class ParticleManagerMixin {
+
+    /** Low-power follower: spawn no new particles (every spawn path ends here). */
+    @Inject(method = "addParticle(Lnet/minecraft/client/particle/Particle;)V", at = @At("HEAD"), cancellable = true)
+    private void inputsync$addParticle(Particle particle, CallbackInfo ci) {
+        if (PowerMode.skipParticles()) ci.cancel();
+    }
+
+    /** ...and stop ticking the ones already alive; they resume when low power ends. */
+    @Inject(method = "tick", at = @At("HEAD"), cancellable = true)
+    private void inputsync$tick(CallbackInfo ci) {
+        if (PowerMode.skipParticles()) ci.cancel();
+    }
+}